@@ -39,6 +39,24 @@ public abstract class AmazonS3Factory {
     public static final String SIGNER_OVERRIDE = "s3fs_signer_override";
     public static final String PATH_STYLE_ACCESS = "s3fs_path_style_access";
     public static final String MULTIPART_PART_SIZE = "s3fs_multipart_part_size";
+    public static final String MULTIPART_MAX_IN_FLIGHT_PARTS = "s3fs_multipart_max_in_flight_parts";
+    public static final String UPLOAD_BUFFER_POOL_SIZE = "s3fs_upload_buffer_pool_size";
+    public static final String BUCKET_CACHE_TTL = "s3fs_bucket_cache_ttl";
+    public static final String OBJECT_SUMMARY_CACHE_SIZE = "s3fs_object_summary_cache_size";
+    public static final String READ_BLOCK_SIZE = "s3fs_read_block_size";
+    public static final String READ_BLOCK_CACHE_SIZE = "s3fs_read_block_cache_size";
+    public static final String READ_AHEAD_PART_SIZE = "s3fs_read_ahead_part_size";
+    public static final String READ_AHEAD_PARTS = "s3fs_read_ahead_parts";
+    public static final String READ_AHEAD_THREADS = "s3fs_read_ahead_threads";
+    public static final String MULTIPART_COPY_THRESHOLD = "s3fs_multipart_copy_threshold";
+    public static final String MULTIPART_COPY_PART_SIZE = "s3fs_multipart_copy_part_size";
+    public static final String MULTIPART_COPY_MAX_IN_FLIGHT_PARTS = "s3fs_multipart_copy_max_in_flight_parts";
+    public static final String DIRECTORY_COPY_PARALLELISM = "s3fs_directory_copy_parallelism";
+    public static final String BATCH_DELETE_PARALLELISM = "s3fs_batch_delete_parallelism";
+    public static final String ASYNC_CHANNEL_THREADS = "s3fs_async_channel_threads";
+    public static final String CONTENT_CACHE_DIRECTORY = "s3fs_content_cache_directory";
+    public static final String CONTENT_CACHE_SIZE = "s3fs_content_cache_size";
+    public static final String LISTING_PARALLELISM = "s3fs_listing_parallelism";
 
     /**
      * Build a new Amazon S3 instance with the URI and the properties provided
@@ -0,0 +1,189 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+
+/**
+ * Deletes keys of a bucket with DeleteObjects requests of up to 1000 keys instead of one request per key.
+ * Up to parallelism requests are sent at the same time, the keys that can not be deleted are reported
+ * one by one.
+ */
+@Slf4j
+class S3BatchDeleter {
+
+    /**
+     * maximum number of keys of a DeleteObjects request
+     */
+    static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private final AmazonS3 client;
+    private final int parallelism;
+
+    S3BatchDeleter(AmazonS3 client, int parallelism) {
+        this.client = client;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param bucketName the bucket of the keys
+     * @param keys       the keys to delete, missing keys are not an error
+     * @param failures   the keys that could not be deleted are added with their error
+     * @return the number of deleted keys
+     * @throws InterruptedIOException if interrupted while waiting for the requests
+     */
+    long delete(String bucketName, List<String> keys, Map<String, Exception> failures) throws InterruptedIOException {
+        return delete(bucketName, Collections.singletonList(keys), failures);
+    }
+
+    /**
+     * Delete a key and every key under it, each page of the listing is deleted while the next one is listed.
+     * When the listing fails the directory key is added to the failures with the error and the keys already
+     * listed are still deleted.
+     *
+     * @param bucketName the bucket of the keys
+     * @param key        the key of a file or a directory
+     * @param failures   the keys that could not be deleted are added with their error
+     * @return the number of deleted keys
+     * @throws InterruptedIOException if interrupted while waiting for the requests
+     */
+    long deleteTree(String bucketName, String key, Map<String, Exception> failures) throws InterruptedIOException {
+        String prefix = key.isEmpty() || key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+        String file = key.endsWith(PATH_SEPARATOR) ? key.substring(0, key.length() - 1) : key;
+        Iterable<List<String>> pages = () -> new ListingPages(bucketName, prefix, file, failures);
+        return delete(bucketName, pages, failures);
+    }
+
+    private long delete(String bucketName, Iterable<List<String>> batches, Map<String, Exception> failures) throws InterruptedIOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-batch-delete-%d")
+                .build());
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (List<String> keys : batches) {
+                for (List<String> batch : Lists.partition(keys, MAX_KEYS_PER_REQUEST)) {
+                    inFlight.acquire();
+                    results.add(executor.submit(() -> {
+                        try {
+                            return deleteBatch(bucketName, batch, failures);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+            }
+            long deleted = 0;
+            for (Future<Long> result : results) {
+                deleted += result.get();
+            }
+            return deleted;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while deleting keys of " + bucketName);
+        } catch (ExecutionException e) {
+            // deleteBatch reports its errors in the failures
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // the submitted requests are not interrupted, only the waiting for them
+            executor.shutdown();
+        }
+    }
+
+    private long deleteBatch(String bucketName, List<String> batch, Map<String, Exception> failures) {
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName)
+                .withKeys(batch.toArray(new String[batch.size()]))
+                .withQuiet(true);
+        try {
+            client.deleteObjects(request);
+            return batch.size();
+        } catch (MultiObjectDeleteException e) {
+            for (MultiObjectDeleteException.DeleteError error : e.getErrors()) {
+                failures.put(error.getKey(), new IOException(error.getCode() + ": " + error.getMessage()));
+            }
+            return batch.size() - e.getErrors().size();
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete {} keys of bucket {}", batch.size(), bucketName, e);
+            for (String key : batch) {
+                failures.put(key, e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * the keys under a prefix, one listing page at a time, the first page also has the file with the name of the directory.
+     * A failed listing ends the pages and is reported in the failures with the prefix.
+     */
+    private class ListingPages implements Iterator<List<String>> {
+
+        private final String bucketName;
+        private final String prefix;
+        private final Map<String, Exception> failures;
+        private String file;
+        private ObjectListing listing;
+        private boolean failed;
+
+        private ListingPages(String bucketName, String prefix, String file, Map<String, Exception> failures) {
+            this.bucketName = bucketName;
+            this.prefix = prefix;
+            this.file = file;
+            this.failures = failures;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !failed && (listing == null || listing.isTruncated());
+        }
+
+        @Override
+        public List<String> next() {
+            List<String> keys = new ArrayList<>();
+            if (file != null && !file.isEmpty()) {
+                keys.add(file);
+                file = null;
+            }
+            try {
+                if (listing == null)
+                    listing = client.listObjects(new ListObjectsRequest()
+                            .withBucketName(bucketName)
+                            .withPrefix(prefix)
+                            .withMaxKeys(MAX_KEYS_PER_REQUEST));
+                else
+                    listing = client.listNextBatchOfObjects(listing);
+            } catch (RuntimeException e) {
+                log.warn("Failed to list keys {} of bucket {}", prefix, bucketName, e);
+                failures.put(prefix, e);
+                failed = true;
+                return keys;
+            }
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                keys.add(summary.getKey());
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.Bucket;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Buckets known by a {@link S3FileSystem}, so opening a file does not need a ListBuckets request.
+ * <p>
+ * One ListBuckets loads every bucket of the account at once, buckets of other accounts are
+ * resolved with their ACL. Entries older than half the TTL are still served but refreshed in
+ * the background, entries older than the TTL are loaded again before being returned.
+ */
+@Slf4j
+class S3BucketRegistry {
+
+    private final AmazonS3 client;
+    private final long ttl;
+    private final ConcurrentMap<String, Entry> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    private ExecutorService refresher;
+
+    /**
+     * @param client the client of the file system
+     * @param ttl    milliseconds a bucket is kept without being loaded again
+     */
+    S3BucketRegistry(AmazonS3 client, long ttl) {
+        this.client = client;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param bucketName the name of the bucket
+     * @return the bucket, never null
+     * @throws IllegalArgumentException if the bucket can not be found
+     */
+    Bucket getBucket(String bucketName) {
+        Entry entry = buckets.get(bucketName);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.loadedAt;
+            if (age < ttl) {
+                if (age >= ttl / 2)
+                    refreshInBackground(bucketName);
+                return entry.bucket;
+            }
+        }
+        return load(bucketName);
+    }
+
+    /**
+     * @param bucketName the name of the bucket
+     * @return the region of the bucket, fetched once and kept with the bucket
+     */
+    String getRegion(String bucketName) {
+        Entry entry = buckets.get(bucketName);
+        if (entry == null) {
+            getBucket(bucketName);
+            entry = buckets.get(bucketName);
+        }
+        if (entry.region == null)
+            entry.region = client.getBucketLocation(bucketName);
+        return entry.region;
+    }
+
+    /**
+     * @return all the buckets of the account, they replace the cached ones
+     */
+    List<Bucket> listBuckets() {
+        List<Bucket> owned = client.listBuckets();
+        for (Bucket bucket : owned) {
+            put(bucket);
+        }
+        return owned;
+    }
+
+    void invalidate(String bucketName) {
+        buckets.remove(bucketName);
+    }
+
+    synchronized void close() {
+        if (refresher != null)
+            refresher.shutdownNow();
+        buckets.clear();
+    }
+
+    private Bucket load(String bucketName) {
+        for (Bucket bucket : listBuckets()) {
+            if (bucket.getName().equals(bucketName))
+                return bucket;
+        }
+        Bucket bucket = getOtherAwsAccountBucket(bucketName);
+        put(bucket);
+        return bucket;
+    }
+
+    private void put(Bucket bucket) {
+        Entry entry = new Entry(bucket, System.currentTimeMillis());
+        Entry previous = buckets.put(bucket.getName(), entry);
+        // the region of a bucket never changes
+        if (previous != null)
+            entry.region = previous.region;
+    }
+
+    private Bucket getOtherAwsAccountBucket(String bucketName) {
+        AccessControlList bucketAcl = client.getBucketAcl(bucketName);
+
+        if (isNull(bucketAcl)) {
+            log.error("Getting the bucket from other AWS account failed for bucket [{}]", bucketName);
+            throw new IllegalArgumentException("Failed to get the bucket");
+        }
+
+        Bucket bucket = new Bucket(bucketName);
+        bucket.setOwner(bucketAcl.getOwner());
+        bucket.setCreationDate(new Date());
+
+        return bucket;
+    }
+
+    private void refreshInBackground(String bucketName) {
+        if (refreshing.putIfAbsent(bucketName, Boolean.TRUE) != null)
+            return;
+        try {
+            getRefresher().submit(() -> {
+                try {
+                    load(bucketName);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to refresh bucket [{}]", bucketName, e);
+                } finally {
+                    refreshing.remove(bucketName);
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected because the file system is being closed
+            refreshing.remove(bucketName);
+        }
+    }
+
+    private synchronized ExecutorService getRefresher() {
+        if (refresher == null) {
+            refresher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("s3fs-bucket-refresh-%d")
+                    .build());
+        }
+        return refresher;
+    }
+
+    private static class Entry {
+
+        private final Bucket bucket;
+        private final long loadedAt;
+        private volatile String region;
+
+        private Entry(Bucket bucket, long loadedAt) {
+            this.bucket = bucket;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.upplication.s3fs.util.S3Utils;
+import com.upplication.s3fs.util.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+import static java.lang.String.format;
+
+/**
+ * Local copies of the objects read by a {@link S3FileSystem}, keyed by bucket, key and ETag.
+ * <p>
+ * The copies live in a directory of their own under the configured directory and are bounded in bytes,
+ * the least recently read copies are deleted first. Objects bigger than the bound are never cached.
+ * <p>
+ * The size of an object is known before it is downloaded, from its cached summary or a HEAD request, so an
+ * object bigger than the bound is never fetched here.
+ * <p>
+ * A copy is served without any request while the {@link S3ObjectSummaryCache} holds a summary with
+ * the same ETag, so for the cache time of the file system and until the object is written through it:
+ * every write removes both with {@link S3FileSystem#objectWritten(String, String)}.
+ * After that the copy is revalidated with a conditional GET (If-None-Match) that only downloads
+ * the object again if it changed. Concurrent reads of an object share a single download.
+ */
+@Slf4j
+public class S3ContentCache {
+
+    private final Path directory;
+    private final long maximumSize;
+    /**
+     * in access order: the eldest entry is the least recently read
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final SingleFlight<Entry> downloads = new SingleFlight<>();
+    private final S3Utils s3Utils = new S3Utils();
+
+    private Path files;
+    private long size;
+
+    /**
+     * @param directory   the directory where the copies are stored, created on first use
+     * @param maximumSize maximum number of bytes stored
+     */
+    public S3ContentCache(Path directory, long maximumSize) {
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Open a read only channel over a local copy of the object, downloaded if needed.
+     *
+     * @param path the path of the object
+     * @return the channel or null if the object is bigger than the cache
+     * @throws NoSuchFileException if there is no object with the key of the path
+     * @throws IOException         if the download fails
+     */
+    public SeekableByteChannel newByteChannel(S3Path path) throws IOException {
+        String bucket = path.getFileStore().name();
+        String key = path.getKey();
+        String cacheKey = bucket + PATH_SEPARATOR + key;
+        S3ObjectSummaryCache summaries = path.getFileSystem().getObjectSummaryCache();
+        while (true) {
+            S3ObjectSummary summary = summaries.get(bucket, key);
+            Entry cached;
+            synchronized (this) {
+                cached = entries.get(cacheKey);
+                if (cached != null && summary != null && cached.eTag.equals(summary.getETag()))
+                    return Files.newByteChannel(cached.file, StandardOpenOption.READ);
+            }
+            if (cached == null) {
+                // the size decides if the object is downloaded, an object bigger than the cache is read from S3
+                S3ObjectSummary file = summary != null && key.equals(summary.getKey()) ? summary : s3Utils.getFileSummary(path)
+                        .orElseThrow(() -> new NoSuchFileException(format("target not exists: %s", path)));
+                if (file.getSize() > maximumSize)
+                    return null;
+            }
+
+            Entry entry = download(path, cacheKey, cached);
+            if (entry == null)
+                return null;
+            synchronized (this) {
+                if (entries.get(cacheKey) == entry)
+                    return Files.newByteChannel(entry.file, StandardOpenOption.READ);
+            }
+            // evicted by another download before it could be opened
+        }
+    }
+
+    /**
+     * remove the local copy of an object
+     *
+     * @param bucket the bucket of the object
+     * @param key    the key of the object
+     */
+    public synchronized void remove(String bucket, String key) {
+        Entry entry = entries.remove(bucket + PATH_SEPARATOR + key);
+        if (entry != null) {
+            size -= entry.size;
+            delete(entry.file);
+        }
+    }
+
+    /**
+     * remove every local copy and their directory
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            delete(entry.file);
+        }
+        entries.clear();
+        size = 0;
+        if (files != null) {
+            delete(files);
+            files = null;
+        }
+    }
+
+    /**
+     * @return the number of bytes of the local copies
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Only the first caller for a key downloads it, the others wait for its result.
+     */
+    private Entry download(S3Path path, String cacheKey, Entry cached) throws IOException {
+        try {
+            return downloads.run(cacheKey, () -> {
+                // a download may have ended after this caller read the entries
+                Entry entry = current(path, cacheKey);
+                return entry != null ? entry : fetch(path, cacheKey, cached);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(format("interrupted while downloading %s", path));
+        }
+    }
+
+    /**
+     * @return the local copy of the object if it has the ETag of the cached summary, null otherwise
+     */
+    private synchronized Entry current(S3Path path, String cacheKey) {
+        Entry entry = entries.get(cacheKey);
+        S3ObjectSummary summary = path.getFileSystem().getObjectSummaryCache().get(path.getFileStore().name(), path.getKey());
+        return entry != null && summary != null && entry.eTag.equals(summary.getETag()) ? entry : null;
+    }
+
+    private Entry fetch(S3Path path, String cacheKey, Entry cached) throws IOException {
+        String bucket = path.getFileStore().name();
+        String key = path.getKey();
+        S3ObjectSummaryCache summaries = path.getFileSystem().getObjectSummaryCache();
+        GetObjectRequest request = new GetObjectRequest(bucket, key);
+        if (cached != null)
+            request.setNonmatchingETagConstraints(Collections.singletonList(cached.eTag));
+
+        S3Object object;
+        try {
+            object = path.getFileSystem().getClient().getObject(request);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                remove(bucket, key);
+                throw new NoSuchFileException(format("target not exists: %s", path));
+            }
+            throw new IOException(format("Cannot access file: %s", path), e);
+        }
+
+        if (object == null) {
+            // 304 Not Modified: the local copy is still the content of the object
+            summaries.put(bucket, key, summary(bucket, key, cached.eTag, cached.size, cached.lastModified));
+            return cached;
+        }
+
+        try (S3Object content = object) {
+            ObjectMetadata metadata = content.getObjectMetadata();
+            // without an ETag the copy could never be revalidated
+            if (metadata.getContentLength() > maximumSize || metadata.getETag() == null) {
+                content.getObjectContent().abort();
+                summaries.put(bucket, key, summary(bucket, key, metadata.getETag(), metadata.getContentLength(), metadata.getLastModified()));
+                return null;
+            }
+            Path file = Files.createTempFile(files(), "object-", null);
+            try {
+                Files.copy(content.getObjectContent(), file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                delete(file);
+                throw e;
+            }
+            Entry entry = new Entry(metadata.getETag(), file, Files.size(file), metadata.getLastModified());
+            put(cacheKey, entry);
+            summaries.put(bucket, key, summary(bucket, key, entry.eTag, entry.size, entry.lastModified));
+            return entry;
+        }
+    }
+
+    private synchronized void put(String cacheKey, Entry entry) {
+        Entry previous = entries.put(cacheKey, entry);
+        if (previous != null) {
+            size -= previous.size;
+            delete(previous.file);
+        }
+        size += entry.size;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maximumSize && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            if (evicted == entry)
+                break;
+            eldest.remove();
+            size -= evicted.size;
+            delete(evicted.file);
+        }
+    }
+
+    private synchronized Path files() throws IOException {
+        if (files == null)
+            files = Files.createTempDirectory(Files.createDirectories(directory), "s3fs-");
+        return files;
+    }
+
+    /**
+     * channels already opened on the file keep reading it where the file system allows it
+     */
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete the cached file {}", file, e);
+        }
+    }
+
+    private static S3ObjectSummary summary(String bucket, String key, String eTag, long size, Date lastModified) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucket);
+        summary.setKey(key);
+        summary.setETag(eTag);
+        summary.setSize(size);
+        summary.setLastModified(lastModified);
+        return summary;
+    }
+
+    private static class Entry {
+
+        private final String eTag;
+        private final Path file;
+        private final long size;
+        private final Date lastModified;
+
+        private Entry(String eTag, Path file, long size, Date lastModified) {
+            this.eTag = eTag;
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.upplication.s3fs;
+
+import com.google.common.collect.Iterators;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+
+/**
+ * {@link DirectoryStream} over the first level of a S3 directory, returned by
+ * {@link S3FileSystemProvider#newDirectoryStream(Path, DirectoryStream.Filter)}.
+ * <p>
+ * The entries are returned in the order of their keys. The size of the listing pages and the key to start
+ * after can be set before the iterator is obtained, to resume a listing after the last entry returned by a
+ * previous one:
+ * <pre>
+ * try (DirectoryStream&lt;Path&gt; stream = Files.newDirectoryStream(dir)) {
+ *     ((S3DirectoryStream) stream).pageSize(100).startAfter(checkpoint);
+ *     for (Path entry : stream) {
+ *         ...
+ *         checkpoint = S3DirectoryStream.continuationKey(entry);
+ *     }
+ * }
+ * </pre>
+ * Closing the stream cancels the listing of the next page by its iterators.
+ * <p>
+ * The entries are filtered by the filter of the stream. With a {@link S3PathMatcher} of a single name only the
+ * keys under the literal prefix of its glob are listed. The entries are always the direct children of the
+ * directory, see {@link S3FileSystemProvider#glob(Path, S3PathMatcher)} to match keys at any depth.
+ */
+public class S3DirectoryStream implements DirectoryStream<Path> {
+
+    private final S3Path dir;
+    private final DirectoryStream.Filter<? super Path> filter;
+    private Integer pageSize;
+    private String startAfter;
+    private final List<S3Iterator> iterators = new ArrayList<>();
+    private boolean closed;
+
+    public S3DirectoryStream(S3Path dir) {
+        this(dir, null);
+    }
+
+    /**
+     * @param dir    the directory to list
+     * @param filter the filter of the entries, null to accept every entry
+     */
+    public S3DirectoryStream(S3Path dir, DirectoryStream.Filter<? super Path> filter) {
+        this.dir = dir;
+        this.filter = filter;
+    }
+
+    /**
+     * @param pageSize the maximum number of keys listed by each request, at most 1000
+     * @return this stream
+     */
+    public S3DirectoryStream pageSize(int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("page size must be positive: " + pageSize);
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * @param startAfter the key after which the listing starts, usually the {@link #continuationKey(Path)} of
+     *                   the last entry returned by a previous listing of the same directory
+     * @return this stream
+     */
+    public S3DirectoryStream startAfter(String startAfter) {
+        this.startAfter = startAfter;
+        return this;
+    }
+
+    /**
+     * @param entry an entry returned by the stream
+     * @return the key to start after to resume the listing after the entry: its key, followed by a slash
+     * for a directory so the keys under it are skipped too
+     * @throws IOException if the attributes of the entry cannot be read
+     */
+    public static String continuationKey(Path entry) throws IOException {
+        S3Path s3Path = (S3Path) entry;
+        // the entries carry the attributes of their listing, no request is needed
+        boolean directory = Files.readAttributes(s3Path, BasicFileAttributes.class).isDirectory();
+        return directory ? s3Path.getKey() + PATH_SEPARATOR : s3Path.getKey();
+    }
+
+    @Override
+    public synchronized Iterator<Path> iterator() {
+        if (closed)
+            throw new IllegalStateException("the directory stream is closed");
+        if (filter instanceof S3PathMatcher && !((S3PathMatcher) filter).hasMultipleNames())
+            return iterator((S3PathMatcher) filter);
+
+        S3Iterator iterator = new S3Iterator(dir, false, pageSize, startAfter);
+        iterators.add(iterator);
+        if (filter == null)
+            return iterator;
+        return Iterators.filter(iterator, entry -> {
+            try {
+                return filter.accept(entry);
+            } catch (IOException e) {
+                throw new DirectoryIteratorException(e);
+            }
+        });
+    }
+
+    /**
+     * list only the first level keys under the literal prefix of the matcher, it matches their file name
+     */
+    private Iterator<Path> iterator(S3PathMatcher matcher) {
+        String key = dir.getKey();
+        String dirKey = key.isEmpty() || key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+        S3Iterator iterator = new S3Iterator(dir.getFileStore(), dirKey, matcher.getLiteralPrefix(), false, pageSize, startAfter);
+        iterators.add(iterator);
+        return Iterators.filter(iterator, matcher::accept);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        for (S3Iterator iterator : iterators) {
+            iterator.close();
+        }
+        iterators.clear();
+    }
+}
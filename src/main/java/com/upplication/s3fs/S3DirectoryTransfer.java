@@ -0,0 +1,199 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+import static java.lang.String.format;
+
+/**
+ * Recursive server side copy or move of a directory.
+ * <p>
+ * The objects under the source are listed page by page and copied while the listing goes on,
+ * with at most parallelism copies in flight. A move deletes the sources with batched
+ * DeleteObjects requests once every object was copied, the sources are kept if any copy failed.
+ * <p>
+ * The transfer runs in the background: the counters can be polled while it runs and
+ * {@link #waitForCompletion()} reports the failures.
+ */
+@Slf4j
+public class S3DirectoryTransfer {
+
+    private final S3FileSystemProvider provider;
+    private final S3Path source;
+    private final S3Path target;
+    private final boolean move;
+    private final int parallelism;
+    private final int deleteParallelism;
+
+    private final AtomicLong listed = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final Map<String, Exception> failures = new ConcurrentHashMap<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile boolean cancelled;
+
+    S3DirectoryTransfer(S3FileSystemProvider provider, S3Path source, S3Path target, boolean move, int parallelism, int deleteParallelism) {
+        this.provider = provider;
+        this.source = source;
+        this.target = target;
+        this.move = move;
+        this.parallelism = parallelism;
+        this.deleteParallelism = deleteParallelism;
+    }
+
+    S3DirectoryTransfer start() {
+        Thread thread = new Thread(this::run, "s3fs-directory-transfer");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @return the number of objects listed under the source so far
+     */
+    public long getObjectsListed() {
+        return listed.get();
+    }
+
+    /**
+     * @return the number of objects copied to the target so far
+     */
+    public long getObjectsCopied() {
+        return copied.get();
+    }
+
+    /**
+     * @return the number of source objects deleted so far, always 0 for a copy
+     */
+    public long getObjectsDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return the keys that failed with their error
+     */
+    public Map<String, Exception> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * stop listing and copying, the objects already copied are kept and nothing is deleted
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @throws IOException if the transfer was cancelled or any object failed, the failures are suppressed exceptions
+     */
+    public void waitForCompletion() throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new InterruptedIOException(format("interrupted while transferring %s to %s", source, target));
+        }
+        if (!failures.isEmpty()) {
+            IOException e = new IOException(format("%d objects failed to %s from %s to %s", failures.size(), move ? "move" : "copy", source, target));
+            for (Exception failure : failures.values()) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        if (cancelled)
+            throw new IOException(format("transfer from %s to %s cancelled", source, target));
+    }
+
+    private void run() {
+        AmazonS3 client = source.getFileSystem().getClient();
+        String sourceBucket = source.getFileStore().name();
+        String targetBucket = target.getFileStore().name();
+        String sourcePrefix = directoryPrefix(source.getKey());
+        String targetPrefix = directoryPrefix(target.getKey());
+        List<String> copiedKeys = Collections.synchronizedList(new ArrayList<>());
+        Semaphore inFlight = new Semaphore(parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-directory-copy-%d")
+                .build());
+        try {
+            ObjectListing listing = client.listObjects(new ListObjectsRequest()
+                    .withBucketName(sourceBucket)
+                    .withPrefix(sourcePrefix));
+            while (!cancelled) {
+                for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                    if (cancelled)
+                        break;
+                    listed.incrementAndGet();
+                    String sourceKey = summary.getKey();
+                    String targetKey = targetPrefix + sourceKey.substring(sourcePrefix.length());
+                    inFlight.acquire();
+                    executor.submit(() -> {
+                        try {
+                            provider.copyObject(client, sourceBucket, sourceKey, summary.getSize(), null, targetBucket, targetKey);
+                            copied.incrementAndGet();
+                            if (move)
+                                copiedKeys.add(sourceKey);
+                        } catch (IOException | RuntimeException e) {
+                            log.warn("Failed to copy {}/{} to {}/{}", sourceBucket, sourceKey, targetBucket, targetKey, e);
+                            failures.put(sourceKey, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                if (!listing.isTruncated())
+                    break;
+                listing = client.listNextBatchOfObjects(listing);
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            target.getFileSystem().getObjectSummaryCache().removeTree(targetBucket, target.getKey());
+
+            if (move && failures.isEmpty() && !cancelled) {
+                deleted.addAndGet(new S3BatchDeleter(client, deleteParallelism).delete(sourceBucket, copiedKeys, failures));
+                source.getFileSystem().getObjectSummaryCache().removeTree(sourceBucket, source.getKey());
+            }
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } catch (RuntimeException e) {
+            log.error("Failed to list {}", source, e);
+            failures.put(sourcePrefix, e);
+        } finally {
+            executor.shutdownNow();
+            done.countDown();
+        }
+    }
+
+    private static String directoryPrefix(String key) {
+        if (key.isEmpty() || key.endsWith(PATH_SEPARATOR))
+            return key;
+        return key + PATH_SEPARATOR;
+    }
+}
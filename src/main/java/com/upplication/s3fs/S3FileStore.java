@@ -1,24 +1,21 @@
 package com.upplication.s3fs;
 
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.AccessControlList;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.Owner;
-import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.nio.file.FileStore;
 import java.nio.file.attribute.FileAttributeView;
 import java.nio.file.attribute.FileStoreAttributeView;
-import java.util.Date;
 
-import static java.util.Objects.isNull;
-
-@Slf4j
 public class S3FileStore extends FileStore implements Comparable<S3FileStore> {
 
-    private S3FileSystem fileSystem;
-    private String name;
+    private final S3FileSystem fileSystem;
+    private final String name;
+    /**
+     * the region of a bucket never changes
+     */
+    private volatile String region;
 
     public S3FileStore(S3FileSystem s3FileSystem, String name) {
         this.fileSystem = s3FileSystem;
@@ -85,42 +82,25 @@ public class S3FileStore extends FileStore implements Comparable<S3FileStore> {
     }
 
     public Bucket getBucket() {
-        return getBucket(name);
-    }
-
-    private Bucket getBucket(String bucketName) {
-        for (Bucket buck : getClient().listBuckets()) {
-            if (buck.getName().equals(bucketName)) {
-                return buck;
-            }
-        }
-
-        return getOtherAwsAccountBucket(bucketName);
+        return fileSystem.getBucketRegistry().getBucket(name);
     }
 
-    private Bucket getOtherAwsAccountBucket(String bucketName) {
-        AccessControlList bucketAcl = getClient().getBucketAcl(bucketName);
-
-        if (isNull(bucketAcl)) {
-            log.error("Getting the bucket from other AWS account failed for bucket [{}]", bucketName);
-            throw new IllegalArgumentException("Failed to get the bucket");
+    /**
+     * @return the region of the bucket, resolved once per file system
+     */
+    public String getRegion() {
+        String region = this.region;
+        if (region == null) {
+            region = fileSystem.getBucketRegistry().getRegion(name);
+            this.region = region;
         }
-
-        Bucket bucket = new Bucket(bucketName);
-        bucket.setOwner(bucketAcl.getOwner());
-        bucket.setCreationDate(new Date());
-
-        return bucket;
+        return region;
     }
 
     public S3Path getRootDirectory() {
         return new S3Path(fileSystem, "/" + this.name());
     }
 
-    private AmazonS3 getClient() {
-        return fileSystem.getClient();
-    }
-
     public Owner getOwner() {
         Bucket buck = getBucket();
         if (buck != null)
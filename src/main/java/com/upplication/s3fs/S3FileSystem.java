@@ -1,15 +1,22 @@
 package com.upplication.s3fs;
 
+import static com.upplication.s3fs.AmazonS3Factory.BUCKET_CACHE_TTL;
+import static com.upplication.s3fs.AmazonS3Factory.CONTENT_CACHE_DIRECTORY;
+import static com.upplication.s3fs.AmazonS3Factory.CONTENT_CACHE_SIZE;
+import static com.upplication.s3fs.AmazonS3Factory.OBJECT_SUMMARY_CACHE_SIZE;
 import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
 
 import java.io.IOException;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.Bucket;
@@ -23,18 +30,35 @@ import com.google.common.collect.ImmutableSet;
  */
 public class S3FileSystem extends FileSystem implements Comparable<S3FileSystem> {
 
+    private static final long DEFAULT_BUCKET_CACHE_TTL = 5 * 60 * 1000; // 5 minutes
+    private static final long DEFAULT_OBJECT_SUMMARY_CACHE_SIZE = 10000;
+    private static final long DEFAULT_CONTENT_CACHE_SIZE = 1024 * 1024 * 1024; // 1GB
+
     private final S3FileSystemProvider provider;
     private final String key;
     private final AmazonS3 client;
     private final String endpoint;
+    private final S3BucketRegistry bucketRegistry;
+    private final S3ObjectSummaryCache objectSummaryCache;
+    private final S3ContentCache contentCache;
+    private final ConcurrentMap<String, S3FileStore> fileStores = new ConcurrentHashMap<>();
     private int cache;
 
     public S3FileSystem(S3FileSystemProvider provider, String key, AmazonS3 client, String endpoint) {
+        this(provider, key, client, endpoint, new Properties());
+    }
+
+    public S3FileSystem(S3FileSystemProvider provider, String key, AmazonS3 client, String endpoint, Properties properties) {
         this.provider = provider;
         this.key = key;
         this.client = client;
         this.endpoint = endpoint;
         this.cache = 60000; // 1 minute cache for the s3Path
+        this.bucketRegistry = new S3BucketRegistry(client, Long.parseLong(properties.getProperty(BUCKET_CACHE_TTL, String.valueOf(DEFAULT_BUCKET_CACHE_TTL))));
+        this.objectSummaryCache = new S3ObjectSummaryCache(cache, Long.parseLong(properties.getProperty(OBJECT_SUMMARY_CACHE_SIZE, String.valueOf(DEFAULT_OBJECT_SUMMARY_CACHE_SIZE))));
+        String contentCacheDirectory = properties.getProperty(CONTENT_CACHE_DIRECTORY);
+        this.contentCache = contentCacheDirectory == null ? null
+                : new S3ContentCache(Paths.get(contentCacheDirectory), Long.parseLong(properties.getProperty(CONTENT_CACHE_SIZE, String.valueOf(DEFAULT_CONTENT_CACHE_SIZE))));
     }
 
     @Override
@@ -49,6 +73,11 @@ public class S3FileSystem extends FileSystem implements Comparable<S3FileSystem>
     @Override
     public void close() throws IOException {
         this.provider.close(this);
+        this.bucketRegistry.close();
+        this.objectSummaryCache.clear();
+        if (this.contentCache != null)
+            this.contentCache.clear();
+        this.fileStores.clear();
     }
 
     @Override
@@ -78,8 +107,8 @@ public class S3FileSystem extends FileSystem implements Comparable<S3FileSystem>
     @Override
     public Iterable<FileStore> getFileStores() {
         ImmutableList.Builder<FileStore> builder = ImmutableList.builder();
-        for (Bucket bucket : client.listBuckets()) {
-            builder.add(new S3FileStore(this, bucket.getName()));
+        for (Bucket bucket : bucketRegistry.listBuckets()) {
+            builder.add(getFileStore(bucket.getName()));
         }
         return builder.build();
     }
@@ -98,9 +127,15 @@ public class S3FileSystem extends FileSystem implements Comparable<S3FileSystem>
         return new S3Path(this, first, more);
     }
 
+    /**
+     * @param syntaxAndPattern glob:pattern or regex:pattern
+     * @return the matcher, that can also be given to {@link S3FileSystemProvider#newDirectoryStream(Path, java.nio.file.DirectoryStream.Filter)}
+     * to list only the keys under the literal prefix of a glob
+     * @see S3PathMatcher
+     */
     @Override
-    public PathMatcher getPathMatcher(String syntaxAndPattern) {
-        throw new UnsupportedOperationException();
+    public S3PathMatcher getPathMatcher(String syntaxAndPattern) {
+        return S3PathMatcher.of(syntaxAndPattern);
     }
 
     @Override
@@ -176,4 +211,48 @@ public class S3FileSystem extends FileSystem implements Comparable<S3FileSystem>
     public int getCache() {
         return cache;
     }
+
+    /**
+     * @return the object summaries of this file system, with the counters of its hits, misses and evictions
+     */
+    public S3ObjectSummaryCache getObjectSummaryCache() {
+        return objectSummaryCache;
+    }
+
+    /**
+     * @return the local copies of the objects read through this file system, null unless s3fs_content_cache_directory is set
+     */
+    public S3ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * Forget the cached summary and the local copy of an object written through this file system, so the
+     * next reads see the new content.
+     *
+     * @param bucket the bucket of the object
+     * @param key    the key of the object
+     */
+    public void objectWritten(String bucket, String key) {
+        objectSummaryCache.remove(bucket, key);
+        if (contentCache != null)
+            contentCache.remove(bucket, key);
+    }
+
+    /**
+     * All the paths of a bucket share the same file store, and with it the state of the bucket.
+     *
+     * @param bucketName the name of the bucket
+     * @return the file store of the bucket, created on first use
+     */
+    public S3FileStore getFileStore(String bucketName) {
+        S3FileStore fileStore = fileStores.get(bucketName);
+        if (fileStore == null)
+            fileStore = fileStores.computeIfAbsent(bucketName, name -> new S3FileStore(this, name));
+        return fileStore;
+    }
+
+    S3BucketRegistry getBucketRegistry() {
+        return bucketRegistry;
+    }
 }
\ No newline at end of file
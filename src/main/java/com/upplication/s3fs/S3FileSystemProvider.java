@@ -2,20 +2,28 @@ package com.upplication.s3fs;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.internal.Constants;
-import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.upplication.s3fs.attribute.S3BasicFileAttributeView;
 import com.upplication.s3fs.attribute.S3BasicFileAttributes;
 import com.upplication.s3fs.attribute.S3PosixFileAttributeView;
 import com.upplication.s3fs.attribute.S3PosixFileAttributes;
+import com.upplication.s3fs.channels.S3AsynchronousFileChannel;
+import com.upplication.s3fs.channels.S3ReadAheadInputStream;
+import com.upplication.s3fs.channels.S3ReadOnlySeekableByteChannel;
 import com.upplication.s3fs.channels.S3SeekableByteChannel;
+import com.upplication.s3fs.channels.multipart.DirectBufferPool;
+import com.upplication.s3fs.channels.multipart.S3MultipartCopier;
 import com.upplication.s3fs.channels.multipart.S3MultipartFileChannel;
+import com.upplication.s3fs.channels.multipart.S3StreamingUploadChannel;
 import com.upplication.s3fs.util.AttributesUtils;
 import com.upplication.s3fs.util.Cache;
 import com.upplication.s3fs.util.S3Utils;
@@ -23,7 +31,10 @@ import com.upplication.s3fs.util.S3Utils;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
@@ -32,9 +43,15 @@ import java.nio.file.spi.FileSystemProvider;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.google.common.collect.Sets.difference;
 import static com.upplication.s3fs.AmazonS3Factory.*;
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
 import static java.lang.String.format;
 
 /**
@@ -73,12 +90,25 @@ public class S3FileSystemProvider extends FileSystemProvider {
     private static final ConcurrentMap<String, S3FileSystem> fileSystems = new ConcurrentHashMap<>();
     private static final List<String> PROPS_TO_OVERLOAD = Arrays.asList(ACCESS_KEY, SECRET_KEY, REQUEST_METRIC_COLLECTOR_CLASS, CONNECTION_TIMEOUT, MAX_CONNECTIONS, MAX_ERROR_RETRY, PROTOCOL, PROXY_DOMAIN,
             PROXY_HOST, PROXY_PASSWORD, PROXY_PORT, PROXY_USERNAME, PROXY_WORKSTATION, SOCKET_SEND_BUFFER_SIZE_HINT, SOCKET_RECEIVE_BUFFER_SIZE_HINT, SOCKET_TIMEOUT,
-            USER_AGENT, AMAZON_S3_FACTORY_CLASS, SIGNER_OVERRIDE, PATH_STYLE_ACCESS, MULTIPART_PART_SIZE);
+            USER_AGENT, AMAZON_S3_FACTORY_CLASS, SIGNER_OVERRIDE, PATH_STYLE_ACCESS, MULTIPART_PART_SIZE, MULTIPART_MAX_IN_FLIGHT_PARTS, UPLOAD_BUFFER_POOL_SIZE, BUCKET_CACHE_TTL, OBJECT_SUMMARY_CACHE_SIZE,
+            READ_BLOCK_SIZE, READ_BLOCK_CACHE_SIZE, READ_AHEAD_PART_SIZE, READ_AHEAD_PARTS, READ_AHEAD_THREADS,
+            MULTIPART_COPY_THRESHOLD, MULTIPART_COPY_PART_SIZE, MULTIPART_COPY_MAX_IN_FLIGHT_PARTS, DIRECTORY_COPY_PARALLELISM,
+            BATCH_DELETE_PARALLELISM, ASYNC_CHANNEL_THREADS, CONTENT_CACHE_DIRECTORY, CONTENT_CACHE_SIZE, LISTING_PARALLELISM);
+    private static final long DEFAULT_MULTIPART_COPY_THRESHOLD = 256 * 1024 * 1024; // 256MB
+    private static final int DEFAULT_DIRECTORY_COPY_PARALLELISM = 16;
+    private static final int DEFAULT_BATCH_DELETE_PARALLELISM = 4;
+    private static final int DEFAULT_ASYNC_CHANNEL_THREADS = 16;
+    private static final int DEFAULT_READ_AHEAD_THREADS = 16;
+    private static final int DEFAULT_UPLOAD_BUFFER_POOL_SIZE = 4;
+    private static final int DEFAULT_LISTING_PARALLELISM = 8;
 
     private S3Utils s3Utils = new S3Utils();
     private Cache cache = new Cache();
 
     private Properties props = new Properties();
+    private ExecutorService asyncChannelExecutor;
+    private ExecutorService readAheadExecutor;
+    private DirectBufferPool uploadBufferPool;
 
     @Override
     public String getScheme() {
@@ -306,18 +336,7 @@ public class S3FileSystemProvider extends FileSystemProvider {
 
     @Override
     public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
-        final S3Path s3Path = toS3Path(dir);
-        return new DirectoryStream<Path>() {
-            @Override
-            public void close() throws IOException {
-                // nothing to do here
-            }
-
-            @Override
-            public Iterator<Path> iterator() {
-                return new S3Iterator(s3Path);
-            }
-        };
+        return new S3DirectoryStream(toS3Path(dir), filter);
     }
 
     @Override
@@ -328,25 +347,58 @@ public class S3FileSystemProvider extends FileSystemProvider {
         Preconditions.checkArgument(options.length == 0, "OpenOptions not yet supported: %s", ImmutableList.copyOf(options)); // TODO
         Preconditions.checkArgument(!key.equals(""), "cannot create InputStream for root directory: %s", path);
 
-        try {
-            S3Object object = s3Path.getFileSystem().getClient().getObject(s3Path.getFileStore().name(), key);
-            InputStream res = object.getObjectContent();
-
-            if (res == null)
-                throw new IOException(String.format("The specified path is a directory: %s", path));
+        S3ContentCache contentCache = s3Path.getFileSystem().getContentCache();
+        if (contentCache != null) {
+            SeekableByteChannel cached = contentCache.newByteChannel(s3Path);
+            if (cached != null)
+                return Channels.newInputStream(cached);
+        }
+        return new S3ReadAheadInputStream(s3Path, props, getReadAheadExecutor());
+    }
 
-            return res;
-        } catch (AmazonS3Exception e) {
-            if (e.getStatusCode() == 404)
-                throw new NoSuchFileException(path.toString());
-            // otherwise throws a generic IO exception
-            throw new IOException(String.format("Cannot access file: %s", path), e);
+    /**
+     * Output streams are always sequential, so when the whole object is replaced (no options, TRUNCATE_EXISTING
+     * or CREATE_NEW) they are uploaded while written, with no local temp file. Otherwise the bytes past the
+     * written length must stay and the stream writes over a local copy of the object.
+     */
+    @Override
+    public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
+        S3Path s3Path = toS3Path(path);
+        Set<OpenOption> openOptions = new HashSet<>(Arrays.asList(options));
+        boolean replaces = openOptions.isEmpty() || openOptions.contains(StandardOpenOption.TRUNCATE_EXISTING) ||
+                openOptions.contains(StandardOpenOption.CREATE_NEW);
+        if (!replaces || openOptions.contains(StandardOpenOption.APPEND) || openOptions.contains(StandardOpenOption.READ))
+            return super.newOutputStream(path, options);
+        if (openOptions.isEmpty()) {
+            openOptions.add(StandardOpenOption.CREATE);
+            openOptions.add(StandardOpenOption.TRUNCATE_EXISTING);
         }
+        openOptions.add(StandardOpenOption.WRITE);
+        return Channels.newOutputStream(new S3StreamingUploadChannel(s3Path, openOptions, props, getUploadBufferPool()));
+    }
+
+    /**
+     * the output streams of this provider reuse up to s3fs_upload_buffer_pool_size part buffers
+     */
+    private synchronized DirectBufferPool getUploadBufferPool() {
+        if (uploadBufferPool == null)
+            uploadBufferPool = new DirectBufferPool(Integer.parseInt(props.getProperty(UPLOAD_BUFFER_POOL_SIZE, String.valueOf(DEFAULT_UPLOAD_BUFFER_POOL_SIZE))));
+        return uploadBufferPool;
     }
 
     @Override
     public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
         S3Path s3Path = toS3Path(path);
+        // read only channels are served with ranged GETs instead of downloading the whole object
+        if (options.isEmpty() || (options.size() == 1 && options.contains(StandardOpenOption.READ))) {
+            S3ContentCache contentCache = s3Path.getFileSystem().getContentCache();
+            if (contentCache != null) {
+                SeekableByteChannel cached = contentCache.newByteChannel(s3Path);
+                if (cached != null)
+                    return cached;
+            }
+            return new S3ReadOnlySeekableByteChannel(s3Path, props);
+        }
         return new S3SeekableByteChannel(s3Path, options);
     }
 
@@ -356,6 +408,41 @@ public class S3FileSystemProvider extends FileSystemProvider {
         return new S3MultipartFileChannel(s3Path, options, props);
     }
 
+    /**
+     * The reads and writes of the channel run on the given executor, or on a pool shared by the
+     * channels of this provider with s3fs_async_channel_threads threads when it is null.
+     */
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options, ExecutorService executor, FileAttribute<?>... attrs) throws IOException {
+        S3Path s3Path = toS3Path(path);
+        return new S3AsynchronousFileChannel(s3Path, options, executor != null ? executor : getAsyncChannelExecutor(), props);
+    }
+
+    private synchronized ExecutorService getAsyncChannelExecutor() {
+        if (asyncChannelExecutor == null) {
+            int threads = Integer.parseInt(props.getProperty(ASYNC_CHANNEL_THREADS, String.valueOf(DEFAULT_ASYNC_CHANNEL_THREADS)));
+            asyncChannelExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("s3fs-async-channel-%d")
+                    .build());
+        }
+        return asyncChannelExecutor;
+    }
+
+    /**
+     * the downloads of the input streams of this provider share s3fs_read_ahead_threads threads
+     */
+    private synchronized ExecutorService getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            int threads = Integer.parseInt(props.getProperty(READ_AHEAD_THREADS, String.valueOf(DEFAULT_READ_AHEAD_THREADS)));
+            readAheadExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("s3fs-read-ahead-%d")
+                    .build());
+        }
+        return readAheadExecutor;
+    }
+
     /**
      * Deviations from spec: Does not perform atomic check-and-create. Since a
      * directory is just an S3 object, all directories in the hierarchy are
@@ -372,6 +459,7 @@ public class S3FileSystemProvider extends FileSystemProvider {
         String bucketName = s3Path.getFileStore().name();
         if (bucket == null) {
             s3Path.getFileSystem().getClient().createBucket(bucketName);
+            s3Path.getFileSystem().getBucketRegistry().invalidate(bucketName);
         }
         // create the object as directory
         ObjectMetadata metadata = new ObjectMetadata();
@@ -385,16 +473,126 @@ public class S3FileSystemProvider extends FileSystemProvider {
         S3Path s3Path = toS3Path(path);
         if (Files.notExists(s3Path))
             throw new NoSuchFileException("the path: " + this + " not exists");
-        if (Files.isDirectory(s3Path) && Files.newDirectoryStream(s3Path).iterator().hasNext())
-            throw new DirectoryNotEmptyException("the path: " + this + " is a directory and is not empty");
+        if (Files.isDirectory(s3Path)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(s3Path)) {
+                if (children.iterator().hasNext())
+                    throw new DirectoryNotEmptyException("the path: " + this + " is a directory and is not empty");
+            }
+        }
 
         String key = s3Path.getKey();
         String bucketName = s3Path.getFileStore().name();
         s3Path.getFileSystem().getClient().deleteObject(bucketName, key);
         // we delete the two objects (sometimes exists the key '/' and sometimes not)
         s3Path.getFileSystem().getClient().deleteObject(bucketName, key + "/");
-        // And we remove the entity from the object summary cache.
-        S3ObjectSummaryCache.INSTANCE.remove(key);
+        // And we remove the entity, and the directory summaries under it, from the object summary cache.
+        s3Path.getFileSystem().getObjectSummaryCache().removeTree(bucketName, key);
+    }
+
+    /**
+     * Delete without probing the path first, for callers that already hold its attributes
+     * (for example {@link FileVisitor#visitFile(Object, BasicFileAttributes)}).
+     * A file is one DeleteObject request, an empty directory one listing and one DeleteObject request.
+     *
+     * @param path       the path to delete
+     * @param attributes fresh attributes of the path
+     * @throws DirectoryNotEmptyException if the path is a directory and it is not empty
+     */
+    public void delete(Path path, BasicFileAttributes attributes) throws IOException {
+        S3Path s3Path = toS3Path(path);
+        AmazonS3 client = s3Path.getFileSystem().getClient();
+        String bucketName = s3Path.getFileStore().name();
+        String key = s3Path.getKey();
+
+        if (attributes.isDirectory()) {
+            String prefix = key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+            ObjectListing listing = client.listObjects(new ListObjectsRequest()
+                    .withBucketName(bucketName)
+                    .withPrefix(prefix)
+                    .withMaxKeys(2));
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                if (!summary.getKey().equals(prefix))
+                    throw new DirectoryNotEmptyException("the path: " + path + " is a directory and is not empty");
+            }
+            client.deleteObject(bucketName, prefix);
+        } else {
+            client.deleteObject(bucketName, key);
+        }
+        s3Path.getFileSystem().getObjectSummaryCache().removeTree(bucketName, key);
+    }
+
+    /**
+     * Delete a file or a directory and everything under it. Every page of the listing is deleted
+     * with one DeleteObjects request while the next page is listed.
+     *
+     * @param path the file or directory to delete
+     * @return the paths that could not be deleted with their error, empty when everything was deleted
+     * @throws NoSuchFileException if the path does not exist
+     */
+    public Map<Path, Exception> deleteRecursively(Path path) throws IOException {
+        S3Path s3Path = toS3Path(path);
+        if (Files.notExists(s3Path))
+            throw new NoSuchFileException("the path: " + path + " not exists");
+
+        String bucketName = s3Path.getFileStore().name();
+        String key = s3Path.getKey();
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+        try {
+            new S3BatchDeleter(s3Path.getFileSystem().getClient(), getBatchDeleteParallelism()).deleteTree(bucketName, key, failures);
+        } finally {
+            s3Path.getFileSystem().getObjectSummaryCache().removeTree(bucketName, key);
+        }
+        return toPaths(s3Path.getFileSystem(), bucketName, failures);
+    }
+
+    /**
+     * Delete many files at once with DeleteObjects requests of up to 1000 keys, grouped by bucket.
+     * Like {@link #delete(Path)} both the key and the directory key (ending with '/') of every path are deleted,
+     * but missing paths and directories with entries are not checked.
+     *
+     * @param paths the files or empty directories to delete
+     * @return the paths that could not be deleted with their error, empty when everything was deleted
+     */
+    public Map<Path, Exception> deleteAll(Iterable<? extends Path> paths) throws IOException {
+        Map<S3FileStore, List<String>> keysByBucket = new LinkedHashMap<>();
+        for (Path path : paths) {
+            S3Path s3Path = toS3Path(path);
+            String key = s3Path.getKey();
+            if (key.endsWith(PATH_SEPARATOR))
+                key = key.substring(0, key.length() - 1);
+            List<String> keys = keysByBucket.computeIfAbsent(s3Path.getFileStore(), fileStore -> new ArrayList<>());
+            keys.add(key);
+            keys.add(key + PATH_SEPARATOR);
+        }
+
+        Map<Path, Exception> result = new HashMap<>();
+        for (Map.Entry<S3FileStore, List<String>> bucketKeys : keysByBucket.entrySet()) {
+            S3FileSystem fileSystem = bucketKeys.getKey().getFileSystem();
+            String bucketName = bucketKeys.getKey().name();
+            Map<String, Exception> failures = new ConcurrentHashMap<>();
+            try {
+                new S3BatchDeleter(fileSystem.getClient(), getBatchDeleteParallelism()).delete(bucketName, bucketKeys.getValue(), failures);
+            } finally {
+                S3ObjectSummaryCache cache = fileSystem.getObjectSummaryCache();
+                for (String key : bucketKeys.getValue()) {
+                    cache.remove(bucketName, key);
+                }
+            }
+            result.putAll(toPaths(fileSystem, bucketName, failures));
+        }
+        return result;
+    }
+
+    private Map<Path, Exception> toPaths(S3FileSystem fileSystem, String bucketName, Map<String, Exception> failures) {
+        Map<Path, Exception> paths = new HashMap<>();
+        for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+            paths.put(fileSystem.getPath(PATH_SEPARATOR + bucketName, failure.getKey()), failure.getValue());
+        }
+        return paths;
+    }
+
+    private int getBatchDeleteParallelism() {
+        return Integer.parseInt(props.getProperty(BATCH_DELETE_PARALLELISM, String.valueOf(DEFAULT_BATCH_DELETE_PARALLELISM)));
     }
 
     @Override
@@ -402,12 +600,15 @@ public class S3FileSystemProvider extends FileSystemProvider {
         if (isSameFile(source, target))
             return;
 
+        if (Files.isDirectory(source)) {
+            copyDirectory(source, target, false, options).waitForCompletion();
+            return;
+        }
+
         S3Path s3Source = toS3Path(source);
         S3Path s3Target = toS3Path(target);
-        // TODO: implements support for copying directories
 
-        Preconditions.checkArgument(!Files.isDirectory(source), "copying directories is not yet supported: %s", source);
-        Preconditions.checkArgument(!Files.isDirectory(target), "copying directories is not yet supported: %s", target);
+        Preconditions.checkArgument(!Files.isDirectory(target), "copying a file over a directory is not supported: %s", target);
 
         ImmutableSet<CopyOption> actualOptions = ImmutableSet.copyOf(options);
         verifySupportedOptions(EnumSet.of(StandardCopyOption.REPLACE_EXISTING), actualOptions);
@@ -416,26 +617,186 @@ public class S3FileSystemProvider extends FileSystemProvider {
             throw new FileAlreadyExistsException(format("target already exists: %s", target));
         }
 
-        String bucketNameOrigin = s3Source.getFileStore().name();
-        String keySource = s3Source.getKey();
         String bucketNameTarget = s3Target.getFileStore().name();
         String keyTarget = s3Target.getKey();
-        s3Source.getFileSystem()
-                .getClient().copyObject(
-                bucketNameOrigin,
-                keySource,
+        // the only lookup of the source: a multipart copy needs its metadata too
+        ObjectMetadata sourceMetadata = s3Utils.getObjectMetadata(s3Source);
+        copyObject(s3Source.getFileSystem().getClient(),
+                s3Source.getFileStore().name(),
+                s3Source.getKey(),
+                sourceMetadata.getContentLength(),
+                sourceMetadata,
                 bucketNameTarget,
                 keyTarget);
+        s3Target.getFileSystem().objectWritten(bucketNameTarget, keyTarget);
     }
 
     @Override
     public void move(Path source, Path target, CopyOption... options) throws IOException {
         if (options != null && Arrays.asList(options).contains(StandardCopyOption.ATOMIC_MOVE))
             throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "Atomic not supported");
+        if (Files.isDirectory(source)) {
+            if (!isSameFile(source, target))
+                copyDirectory(source, target, true, options).waitForCompletion();
+            return;
+        }
         copy(source, target, options);
         delete(source);
     }
 
+    /**
+     * List every object under a directory, at any depth, with concurrent listings of ranges of its keys.
+     * Meant for directories with millions of keys, see {@link S3ParallelLister}.
+     *
+     * @param dir     the directory to list
+     * @param ordered true to return the paths in key order, false to return them as soon as they are listed
+     * @return the paths of the objects, with their attributes; close the stream to cancel the listings
+     * @throws IOException if the listing can not be split
+     */
+    public Stream<Path> listParallel(Path dir, boolean ordered) throws IOException {
+        S3Path s3Path = toS3Path(dir);
+        int parallelism = Integer.parseInt(props.getProperty(LISTING_PARALLELISM, String.valueOf(DEFAULT_LISTING_PARALLELISM)));
+        return new S3ParallelLister(s3Path.getFileSystem(), parallelism).list(s3Path, ordered);
+    }
+
+    /**
+     * Walk a file tree like {@link Files#walk(Path, int, FileVisitOption...)}, but with a single flat listing of
+     * the keys under the start directory instead of a listing per directory and a lookup of the attributes
+     * per entry: a tree of any shape costs at most one request per 1000 keys. See {@link S3TreeWalker}.
+     * With a maxDepth of 1 only the first level is listed, with a delimiter. A small maxDepth skips the keys
+     * below it when a directory at maxDepth fills the rest of a page, at the cost of one request per such
+     * directory.
+     * <p>
+     * The paths come depth first, each directory before its content, including the directories that only
+     * exist because there are keys under them. Each path carries its attributes.
+     *
+     * @param start    the file or directory to start from, returned first
+     * @param maxDepth the maximum number of levels of directories to visit
+     * @return the paths of the tree
+     * @throws NoSuchFileException if the start does not exist
+     */
+    public Stream<Path> walk(Path start, int maxDepth) throws IOException {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("'maxDepth' is negative");
+        S3Path s3Path = toS3Path(start);
+        if (!s3Path.getKey().isEmpty()) {
+            S3BasicFileAttributes attributes = (S3BasicFileAttributes) readAttributes(s3Path, BasicFileAttributes.class);
+            s3Path.setFileAttributes(attributes);
+            if (!attributes.isDirectory())
+                return Stream.of(s3Path);
+        } else {
+            // the bucket
+            s3Path.setFileAttributes(new S3BasicFileAttributes(PATH_SEPARATOR, null, 0, true, false));
+        }
+        if (maxDepth == 0)
+            return Stream.of(s3Path);
+        if (maxDepth == 1) {
+            // a delimited listing returns the first level without the keys under it
+            S3Iterator children = new S3Iterator(s3Path);
+            return Stream.concat(Stream.of(s3Path),
+                    StreamSupport.stream(Spliterators.spliteratorUnknownSize(children, Spliterator.ORDERED | Spliterator.NONNULL), false))
+                    .onClose(children::close);
+        }
+
+        Iterator<Path> tree = new S3TreeWalker(s3Path, maxDepth);
+        return Stream.concat(Stream.of(s3Path),
+                StreamSupport.stream(Spliterators.spliteratorUnknownSize(tree, Spliterator.ORDERED | Spliterator.NONNULL), false));
+    }
+
+    /**
+     * Find files like {@link Files#find(Path, int, BiPredicate, FileVisitOption...)}, over {@link #walk(Path, int)}:
+     * the matcher gets the attributes of the paths without any request.
+     *
+     * @param start    the file or directory to start from
+     * @param maxDepth the maximum number of levels of directories to visit
+     * @param matcher  the function that decides if a path is returned
+     * @return the matching paths of the tree
+     * @throws NoSuchFileException if the start does not exist
+     */
+    public Stream<Path> find(Path start, int maxDepth, BiPredicate<Path, BasicFileAttributes> matcher) throws IOException {
+        return walk(start, maxDepth).filter(path -> matcher.test(path, ((S3Path) path).getFileAttributes()));
+    }
+
+    /**
+     * List the objects under a directory, at any depth, whose key relative to the directory matches a glob or
+     * a regex, with a single flat listing of the keys under the literal prefix of the matcher: with
+     * logs/2026-10-*&#47;part-*.gz only the keys that start with logs/2026-10- are listed. Unlike a
+     * {@link DirectoryStream} the paths are not the direct children of the directory.
+     *
+     * @param dir     the directory to list
+     * @param matcher a matcher of {@link S3FileSystem#getPathMatcher(String)}, matched against the relative keys
+     * @return the matching paths in key order, with their attributes; close the stream to cancel the listing
+     */
+    public Stream<Path> glob(Path dir, S3PathMatcher matcher) {
+        S3Path s3Path = toS3Path(dir);
+        String key = s3Path.getKey();
+        String dirKey = key.isEmpty() || key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+        S3Iterator iterator = new S3Iterator(s3Path.getFileStore(), dirKey, matcher.getLiteralPrefix(), true, null, null);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .filter(entry -> {
+                    String entryKey = ((S3Path) entry).getKey();
+                    return entryKey.length() > dirKey.length() && matcher.matches(entryKey.substring(dirKey.length()));
+                })
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Copy or move a directory and everything under it with server side copies, without waiting for it.
+     *
+     * @param source  the directory to copy
+     * @param target  the directory to create, it must not exist unless REPLACE_EXISTING is set
+     * @param move    true to delete the source objects once they are all copied
+     * @param options only REPLACE_EXISTING is supported
+     * @return the running transfer, to poll its progress or wait for it
+     * @throws IOException if the target exists or is under the source
+     */
+    public S3DirectoryTransfer copyDirectory(Path source, Path target, boolean move, CopyOption... options) throws IOException {
+        S3Path s3Source = toS3Path(source);
+        S3Path s3Target = toS3Path(target);
+
+        ImmutableSet<CopyOption> actualOptions = ImmutableSet.copyOf(options);
+        verifySupportedOptions(EnumSet.of(StandardCopyOption.REPLACE_EXISTING), actualOptions);
+
+        if (s3Target.startsWith(s3Source)) {
+            throw new FileSystemException(source.toString(), target.toString(), "the target is inside the source directory");
+        }
+        if (exists(s3Target) && !actualOptions.contains(StandardCopyOption.REPLACE_EXISTING)) {
+            throw new FileAlreadyExistsException(format("target already exists: %s", target));
+        }
+
+        int parallelism = Integer.parseInt(props.getProperty(DIRECTORY_COPY_PARALLELISM, String.valueOf(DEFAULT_DIRECTORY_COPY_PARALLELISM)));
+        return new S3DirectoryTransfer(this, s3Source, s3Target, move, parallelism, getBatchDeleteParallelism()).start();
+    }
+
+    /**
+     * Server side copy of one object, in parallel parts above the multipart copy threshold.
+     * The metadata of the source is null when it was not read, a multipart copy then reads it.
+     */
+    void copyObject(AmazonS3 client, String bucketNameOrigin, String keySource, long size, ObjectMetadata sourceMetadata,
+                    String bucketNameTarget, String keyTarget) throws IOException {
+        long multipartCopyThreshold = Long.parseLong(props.getProperty(MULTIPART_COPY_THRESHOLD, String.valueOf(DEFAULT_MULTIPART_COPY_THRESHOLD)));
+        if (size > multipartCopyThreshold) {
+            // a single CopyObject is serial and limited to 5GB
+            S3MultipartCopier.builder()
+                    .s3Client(client)
+                    .sourceBucket(bucketNameOrigin)
+                    .sourceKey(keySource)
+                    .sourceMetadata(sourceMetadata)
+                    .targetBucket(bucketNameTarget)
+                    .targetKey(keyTarget)
+                    .partSize(props.containsKey(MULTIPART_COPY_PART_SIZE) ? Long.parseLong(props.getProperty(MULTIPART_COPY_PART_SIZE)) : null)
+                    .maxInFlightParts(props.containsKey(MULTIPART_COPY_MAX_IN_FLIGHT_PARTS) ? Integer.parseInt(props.getProperty(MULTIPART_COPY_MAX_IN_FLIGHT_PARTS)) : null)
+                    .build()
+                    .copy();
+        } else {
+            client.copyObject(
+                    bucketNameOrigin,
+                    keySource,
+                    bucketNameTarget,
+                    keyTarget);
+        }
+    }
+
     @Override
     public boolean isSameFile(Path path1, Path path2) throws IOException {
         return path1.isAbsolute() && path2.isAbsolute() && path1.equals(path2);
@@ -556,7 +917,7 @@ public class S3FileSystemProvider extends FileSystemProvider {
      * @return S3FileSystem never null
      */
     public S3FileSystem createFileSystem(URI uri, Properties props) {
-        return new S3FileSystem(this, getFileSystemKey(uri, props), getAmazonS3(uri, props), uri.getHost());
+        return new S3FileSystem(this, getFileSystemKey(uri, props), getAmazonS3(uri, props), uri.getHost(), props);
     }
 
     protected AmazonS3 getAmazonS3(URI uri, Properties props) {
@@ -1,27 +1,64 @@
 package com.upplication.s3fs;
 
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.upplication.s3fs.util.S3Utils;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * S3 iterator over folders at first level.
  * Future versions of this class should be return the elements
  * in a incremental way when the #next() method is called.
+ * <p>
+ * The pages are listed with ListObjectsV2 and its continuation tokens, and the paths are returned in the
+ * order of their keys, the directories at the place of their key with its final slash. A listing can start
+ * after a given key, to resume a scan from the key of the last path returned by a previous one: the key of
+ * a directory has to be followed by a slash to skip it and what is under it, see
+ * {@link S3DirectoryStream#continuationKey(Path)}.
+ * <p>
+ * The next page is listed in the background once the consumer reads the first path of a page, so it does not
+ * wait for a request every page while an iterator that is only checked for emptiness costs a single request.
+ * {@link #close()} cancels it.
  */
 public class S3Iterator implements Iterator<Path> {
+
+    /**
+     * shared by every iterator, its idle threads end after a minute
+     */
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("s3fs-list-prefetch-%d")
+            .build());
+
     private S3FileSystem fileSystem;
     private S3FileStore fileStore;
     private String key;
+    private String startAfter;
     private List<S3Path> items = Lists.newArrayList();
-    private Set<S3Path> addedVirtualDirectories = Sets.newHashSet();
-    private ObjectListing current;
+    // keys of the items of the current page, S3Path#equals is too expensive to dedup big pages
+    private Set<String> itemKeys = Sets.newHashSet();
+    private Set<String> addedVirtualDirectories = Sets.newHashSet();
+    private ListObjectsV2Result current;
+    // set to null by close(), that may be called from another thread
+    private volatile Future<ListObjectsV2Result> nextPage;
+    private volatile boolean closed;
     private int cursor; // index of next element to return
     private int size;
     private boolean incremental;
@@ -33,33 +70,75 @@ public class S3Iterator implements Iterator<Path> {
     }
 
     public S3Iterator(S3Path path, boolean incremental) {
-        this(path.getFileStore(), path.getKey() + (!incremental && !path.getKey().isEmpty() && !path.getKey().endsWith("/") ? "/" : ""), incremental);
+        this(path, incremental, null, null);
+    }
+
+    /**
+     * @param path        the directory to list
+     * @param incremental true to list every key under the directory, false for its first level only
+     * @param maxKeys     the maximum number of keys of each page, null for the default of S3 (1000)
+     * @param startAfter  the key after which the listing starts, null to list from the beginning
+     */
+    public S3Iterator(S3Path path, boolean incremental, Integer maxKeys, String startAfter) {
+        this(path.getFileStore(), path.getKey() + (!incremental && !path.getKey().isEmpty() && !path.getKey().endsWith("/") ? "/" : ""), incremental, maxKeys, startAfter);
     }
 
     public S3Iterator(S3FileStore fileStore, String key, boolean incremental) {
-        ListObjectsRequest listObjectsRequest = buildRequest(fileStore.name(), key, incremental);
+        this(fileStore, key, incremental, null, null);
+    }
+
+    public S3Iterator(S3FileStore fileStore, String key, boolean incremental, Integer maxKeys, String startAfter) {
+        this(fileStore, key, "", incremental, maxKeys, startAfter);
+    }
+
+    /**
+     * @param fileStore   the bucket
+     * @param key         the key of the directory, with its final slash
+     * @param namePrefix  only the keys that start with the key of the directory followed by this prefix are listed
+     * @param incremental true to list every key under the directory, false for its first level only
+     * @param maxKeys     the maximum number of keys of each page, null for the default of S3 (1000)
+     * @param startAfter  the key after which the listing starts, null to list from the beginning. With a final
+     *                    slash the directory of that key is skipped too
+     */
+    public S3Iterator(S3FileStore fileStore, String key, String namePrefix, boolean incremental, Integer maxKeys, String startAfter) {
+        ListObjectsV2Request listObjectsRequest = buildRequest(fileStore.name(), key, incremental, maxKeys);
+        if (!namePrefix.isEmpty())
+            listObjectsRequest.setPrefix(key + namePrefix);
+        if (startAfter != null)
+            listObjectsRequest.setStartAfter(startAfter);
 
         this.fileStore = fileStore;
         this.fileSystem = fileStore.getFileSystem();
         this.key = key;
-        this.current = fileSystem.getClient().listObjects(listObjectsRequest);
+        this.startAfter = startAfter;
+        this.current = fileSystem.getClient().listObjectsV2(listObjectsRequest);
         this.incremental = incremental;
         loadObjects();
     }
 
     @Override
     public boolean hasNext() {
-        return cursor != size || current.isTruncated();
+        return cursor != size || !closed && current.isTruncated();
     }
 
     @Override
     public S3Path next() {
-        if (cursor == size && current.isTruncated()) {
-            this.current = fileSystem.getClient().listNextBatchOfObjects(current);
+        while (cursor == size && !closed && current.isTruncated()) {
+            // a page without paths was not read, its next page was not listed yet
+            if (nextPage == null)
+                prefetch();
+            ListObjectsV2Result page = awaitNextPage();
+            if (page == null)
+                break;
+            nextPage = null;
+            this.current = page;
             loadObjects();
         }
         if (cursor == size)
             throw new NoSuchElementException();
+        if (cursor == 0)
+            // the consumer reads this page: list the next one meanwhile
+            prefetch();
         return items.get(cursor++);
     }
 
@@ -68,8 +147,53 @@ public class S3Iterator implements Iterator<Path> {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Cancel the listing of the next page, the paths of the current page are still returned.
+     */
+    public void close() {
+        closed = true;
+        Future<ListObjectsV2Result> page = nextPage;
+        nextPage = null;
+        if (page != null)
+            page.cancel(true);
+    }
+
+    /**
+     * list the page after the current one on the shared pool: an iterator that is never closed does
+     * not keep a thread
+     */
+    private void prefetch() {
+        if (closed || nextPage != null || !current.isTruncated())
+            return;
+        ListObjectsV2Request request = nextPageRequest();
+        nextPage = PREFETCH_EXECUTOR.submit(() -> fileSystem.getClient().listObjectsV2(request));
+    }
+
+    /**
+     * @return the next page, or null if the iterator was closed before it was listed
+     */
+    private ListObjectsV2Result awaitNextPage() {
+        Future<ListObjectsV2Result> page = nextPage;
+        if (page == null || page.isCancelled())
+            return null;
+        try {
+            return page.get();
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new DirectoryIteratorException(new InterruptedIOException("interrupted while listing " + key));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new DirectoryIteratorException(new IOException(e.getCause()));
+        }
+    }
+
     private void loadObjects() {
         this.items.clear();
+        this.itemKeys.clear();
         if (incremental)
             parseObjects();
         else
@@ -81,68 +205,100 @@ public class S3Iterator implements Iterator<Path> {
     private void parseObjects() {
         for (final S3ObjectSummary objectSummary : current.getObjectSummaries()) {
             final String objectSummaryKey = objectSummary.getKey();
-            String[] keyParts = fileSystem.key2Parts(objectSummaryKey);
-            addParentPaths(keyParts);
-            S3Path path = new S3Path(fileSystem, "/" + fileStore.name(), keyParts, objectSummary);
-            if (!items.contains(path)) {
+            S3Path path = new S3Path(fileSystem, "/" + fileStore.name(), fileSystem.key2Parts(objectSummaryKey), objectSummary);
+            addParentPaths(path.getKey());
+            if (itemKeys.add(path.getKey())) {
                 items.add(path);
             }
         }
     }
 
-    private void addParentPaths(String[] keyParts) {
-        if (keyParts.length <= 1)
-            return;
-        String[] subParts = Arrays.copyOf(keyParts, keyParts.length - 1);
-        List<S3Path> parentPaths = new ArrayList<>();
-        while (subParts.length > 0) {
-            S3Path path = new S3Path(fileSystem, "/" + fileStore.name(), subParts);
-            String prefix = current.getPrefix();
-
-            String parentKey = path.getKey();
+    /**
+     * add the virtual directories between the prefix of the listing and the key, from the top one
+     *
+     * @param key the normalized key of an object
+     */
+    private void addParentPaths(String key) {
+        String prefix = current.getPrefix();
+        int firstNewParent = items.size();
+        for (int end = key.lastIndexOf('/'); end > 0; end = key.lastIndexOf('/', end - 1)) {
+            String parentKey = key.substring(0, end);
             if (prefix.length() > parentKey.length() && prefix.contains(parentKey))
                 break;
-            if (items.contains(path) || addedVirtualDirectories.contains(path)) {
-                subParts = Arrays.copyOf(subParts, subParts.length - 1);
+            if (itemKeys.contains(parentKey) || !addedVirtualDirectories.add(parentKey))
                 continue;
-            }
-            parentPaths.add(path);
-            addedVirtualDirectories.add(path);
-            subParts = Arrays.copyOf(subParts, subParts.length - 1);
+            itemKeys.add(parentKey);
+            // the top parent has to come first
+            items.add(firstNewParent, new S3Path(fileSystem, "/" + fileStore.name() + "/" + parentKey));
         }
-        Collections.reverse(parentPaths);
-        items.addAll(parentPaths);
     }
 
-
     /**
-     * add to the listPath the elements at the same level that s3Path
+     * add to the listPath the elements at the same level that s3Path, in the order of their keys: the
+     * common prefixes are merged with the object summaries
      *
      * @param key      the uri to parse
      * @param listPath List not null list to add
      * @param current  ObjectListing to walk
      */
-    private void parseObjectListing(String key, List<S3Path> listPath, ObjectListing current) {
-        for (String commonPrefix : current.getCommonPrefixes()) {
-            if (!commonPrefix.equals("/")) {
-                listPath.add(new S3Path(fileSystem, "/" + fileStore.name(), fileSystem.key2Parts(commonPrefix)));
-            }
+    private void parseObjectListing(String key, List<S3Path> listPath, ListObjectsV2Result current) {
+        List<String> commonPrefixes = current.getCommonPrefixes();
+        List<S3ObjectSummary> objectSummaries = current.getObjectSummaries();
+        int prefixIndex = 0;
+        int summaryIndex = 0;
+        while (prefixIndex < commonPrefixes.size() || summaryIndex < objectSummaries.size()) {
+            if (summaryIndex == objectSummaries.size() || prefixIndex < commonPrefixes.size()
+                    && S3ParallelLister.KEY_ORDER.compare(commonPrefixes.get(prefixIndex), objectSummaries.get(summaryIndex).getKey()) < 0)
+                addCommonPrefix(commonPrefixes.get(prefixIndex++), listPath);
+            else
+                addObjectSummary(key, objectSummaries.get(summaryIndex++), listPath);
         }
-        // TODO: figure our a way to efficiently preprocess commonPrefix basicFileAttributes
-        for (final S3ObjectSummary objectSummary : current.getObjectSummaries()) {
-            final String objectSummaryKey = objectSummary.getKey();
-            // we only want the first level
-            String immediateDescendantKey = getImmediateDescendant(key, objectSummaryKey);
-            if (immediateDescendantKey != null) {
-                S3Path descendentPart = new S3Path(fileSystem, "/" + fileStore.name(), fileSystem.key2Parts(immediateDescendantKey), objectSummary);
-                descendentPart.setFileAttributes(s3Utils.toS3FileAttributes(objectSummary, descendentPart.getKey()));
-                if (!listPath.contains(descendentPart)) {
-                    listPath.add(descendentPart);
-                }
+    }
+
+    private void addCommonPrefix(String commonPrefix, List<S3Path> listPath) {
+        // the directory of a start after key with a final slash was returned before
+        if (commonPrefix.equals("/") || commonPrefix.equals(startAfter))
+            return;
+        S3Path path = new S3Path(fileSystem, "/" + fileStore.name(), fileSystem.key2Parts(commonPrefix));
+        // a common prefix is a directory: no request is needed to read its attributes
+        S3ObjectSummary directorySummary = getDirectorySummary(path.getKey());
+        path.setFileAttributes(s3Utils.toS3FileAttributes(directorySummary, path.getKey()));
+        if (itemKeys.add(path.getKey()))
+            listPath.add(path);
+    }
+
+    private void addObjectSummary(String key, S3ObjectSummary objectSummary, List<S3Path> listPath) {
+        // we only want the first level
+        String immediateDescendantKey = getImmediateDescendant(key, objectSummary.getKey());
+        if (immediateDescendantKey != null) {
+            S3Path descendentPart = new S3Path(fileSystem, "/" + fileStore.name(), fileSystem.key2Parts(immediateDescendantKey), objectSummary);
+            descendentPart.setFileAttributes(s3Utils.toS3FileAttributes(objectSummary, descendentPart.getKey()));
+            if (itemKeys.add(descendentPart.getKey())) {
+                listPath.add(descendentPart);
             }
         }
     }
 
+    /**
+     * the cached summary of the directory, or a synthetic one cached for the next lookups.
+     * A cached summary is kept: it may be the one of a marker object, with its last modified time
+     *
+     * @param key the normalized key of the directory
+     * @return the summary of a directory for {@link S3Utils#toS3FileAttributes(S3ObjectSummary, String)}
+     */
+    private S3ObjectSummary getDirectorySummary(String key) {
+        String directoryKey = key + "/";
+        S3ObjectSummaryCache cache = fileSystem.getObjectSummaryCache();
+        S3ObjectSummary cached = cache.get(fileStore.name(), key);
+        if (cached != null && cached.getKey().startsWith(directoryKey))
+            return cached;
+
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(fileStore.name());
+        summary.setKey(directoryKey);
+        return cache.put(fileStore.name(), key, summary);
+    }
+
     /**
      * The current #buildRequest() get all subdirectories and her content.
      * This method filter the keyChild and check if is a inmediate
@@ -174,13 +330,33 @@ public class S3Iterator implements Iterator<Path> {
     }
 
 
-    ListObjectsRequest buildRequest(String bucketName, String key, boolean incremental) {
+    ListObjectsV2Request buildRequest(String bucketName, String key, boolean incremental) {
         return buildRequest(bucketName, key, incremental, null);
     }
 
-    ListObjectsRequest buildRequest(String bucketName, String key, boolean incremental, Integer maxKeys) {
-        if (incremental)
-            return new ListObjectsRequest(bucketName, key, null, null, maxKeys);
-        return new ListObjectsRequest(bucketName, key, key, "/", maxKeys);
+    ListObjectsV2Request buildRequest(String bucketName, String key, boolean incremental, Integer maxKeys) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(key)
+                .withMaxKeys(maxKeys);
+        if (!incremental) {
+            request.setDelimiter("/");
+            // skip the marker object of the directory itself
+            if (!key.isEmpty())
+                request.setStartAfter(key);
+        }
+        return request;
+    }
+
+    /**
+     * the request of the page after the current one, the start after key only applies to the first page
+     */
+    private ListObjectsV2Request nextPageRequest() {
+        return new ListObjectsV2Request()
+                .withBucketName(current.getBucketName())
+                .withPrefix(current.getPrefix())
+                .withDelimiter(current.getDelimiter())
+                .withMaxKeys(current.getMaxKeys() > 0 ? current.getMaxKeys() : null)
+                .withContinuationToken(current.getNextContinuationToken());
     }
 }
\ No newline at end of file
@@ -1,42 +1,187 @@
 package com.upplication.s3fs;
 
+import com.amazonaws.AbortedException;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.upplication.s3fs.util.SingleFlight;
 
+import java.util.NavigableSet;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
-public enum S3ObjectSummaryCache {
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
 
-    INSTANCE;
+/**
+ * Object summaries of a {@link S3FileSystem}, keyed by bucket and key.
+ * <p>
+ * The cache is bounded (least recently used entries are evicted first) and every entry
+ * expires after the cache time of the file system. Hits, misses and evictions are counted,
+ * see {@link #stats()}.
+ * <p>
+ * The keys are also kept sorted, so finding or removing the entries under a prefix is O(log n).
+ * The index may briefly hold keys that already left the cache, every match is checked against the cache.
+ * <p>
+ * Concurrent misses of the same key are coalesced: only the first caller sends the request,
+ * see {@link #lookupFile(String, String, Supplier)} and {@link #lookupDirectory(String, String, Supplier)}.
+ * A caller that missed just before the request of another one ended finds its result in the cache
+ * instead of sending the request again.
+ */
+public class S3ObjectSummaryCache {
 
-    private static final ConcurrentHashMap<String, S3ObjectSummary> cache = new ConcurrentHashMap<>();
+    private final Cache<String, S3ObjectSummary> cache;
+    private final NavigableSet<String> index = new ConcurrentSkipListSet<>();
+    private final SingleFlight<Optional<S3ObjectSummary>> fileLookups = new SingleFlight<>();
+    private final SingleFlight<Optional<S3ObjectSummary>> directoryLookups = new SingleFlight<>();
 
-    public S3ObjectSummary get(String s3Path) {
-        return cache.get(s3Path);
+    /**
+     * @param ttl         milliseconds an entry is kept, -1 to keep them until evicted
+     * @param maximumSize maximum number of entries
+     */
+    public S3ObjectSummaryCache(long ttl, long maximumSize) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener(notification -> {
+                    // a replaced key is still in the cache
+                    if (notification.getCause() != RemovalCause.REPLACED)
+                        unindex((String) notification.getKey());
+                });
+        if (ttl != -1)
+            builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        this.cache = builder.build();
     }
 
-    public S3ObjectSummary put(String s3Path, S3ObjectSummary objectSummary) {
-        cache.put(s3Path, objectSummary);
+    public S3ObjectSummary get(String bucket, String key) {
+        return cache.getIfPresent(cacheKey(bucket, key));
+    }
+
+    public S3ObjectSummary put(String bucket, String key, S3ObjectSummary objectSummary) {
+        String cacheKey = cacheKey(bucket, key);
+        cache.put(cacheKey, objectSummary);
+        index.add(cacheKey);
         return objectSummary;
     }
 
-    public S3ObjectSummary remove(String key) {
-        return cache.remove(key);
+    public void remove(String bucket, String key) {
+        cache.invalidate(cacheKey(bucket, key));
+    }
+
+    /**
+     * remove the key and every key under it
+     *
+     * @param bucket the bucket of the keys
+     * @param key    the key of a file or a directory
+     */
+    public void removeTree(String bucket, String key) {
+        remove(bucket, key);
+        String prefix = cacheKey(bucket, key) + PATH_SEPARATOR;
+        for (String cacheKey : index.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            cache.invalidate(cacheKey);
+            unindex(cacheKey);
+        }
+    }
+
+    /**
+     * Run the lookup of the object with this key, or wait for the same lookup if another thread runs it.
+     * The lookup is not run when the summary of the object is in the cache by then.
+     *
+     * @param bucket the bucket of the key
+     * @param key    the key of the object
+     * @param lookup the request, expected to put what it finds in this cache
+     * @return the result of the lookup
+     */
+    public Optional<S3ObjectSummary> lookupFile(String bucket, String key, Supplier<Optional<S3ObjectSummary>> lookup) {
+        return await(fileLookups, cacheKey(bucket, key), () -> {
+            S3ObjectSummary cached = get(bucket, key);
+            // directories are cached with the summary of their first child
+            return cached != null && key.equals(cached.getKey()) ? Optional.of(cached) : lookup.get();
+        });
+    }
+
+    /**
+     * Run the lookup of the first object under this key, or wait for the same lookup if another thread runs it.
+     * The lookup is not run when a summary of the key is in the cache by then.
+     *
+     * @param bucket the bucket of the key
+     * @param key    the key of the directory
+     * @param lookup the request, expected to put what it finds in this cache
+     * @return the result of the lookup
+     */
+    public Optional<S3ObjectSummary> lookupDirectory(String bucket, String key, Supplier<Optional<S3ObjectSummary>> lookup) {
+        return await(directoryLookups, cacheKey(bucket, key), () -> {
+            S3ObjectSummary cached = get(bucket, key);
+            return cached != null ? Optional.of(cached) : lookup.get();
+        });
+    }
+
+    /**
+     * a waiting caller that is interrupted gives up like an interrupted request of the client
+     */
+    private static Optional<S3ObjectSummary> await(SingleFlight<Optional<S3ObjectSummary>> lookups, String cacheKey,
+                                                   Supplier<Optional<S3ObjectSummary>> lookup) {
+        try {
+            return lookups.run(cacheKey, lookup::get);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("interrupted while waiting for the lookup of " + cacheKey);
+        }
     }
 
     public void clear() {
-        cache.clear();
+        cache.invalidateAll();
+        index.clear();
+    }
+
+    /**
+     * @return the number of hits, misses and evictions since the cache was created
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
     }
 
-    public Optional<S3ObjectSummary> getOrCacheDirectory(String key) {
+    public Optional<S3ObjectSummary> getOrCacheDirectory(String bucket, String key) {
+        S3ObjectSummary summary = get(bucket, key);
+        if (summary != null)
+            return Optional.of(summary);
+
+        String prefix = cacheKey(bucket, key) + PATH_SEPARATOR;
+        String child = index.ceiling(prefix);
+        while (child != null && child.startsWith(prefix)) {
+            S3ObjectSummary childSummary = cache.getIfPresent(child);
+            if (childSummary != null)
+                return Optional.of(put(bucket, key, childSummary));
+            // expired but not yet cleaned up by the cache
+            unindex(child);
+            child = index.higher(child);
+        }
+        return Optional.empty();
+    }
 
-        return Optional.ofNullable(get(key))
-                .map(Optional::of)
-                .orElseGet(() -> cache.keySet()
-                        .stream()
-                        .filter(k -> k.startsWith(key + "/"))
-                        .findFirst()
-                        .map(s -> put(key, get(s))));
+    /**
+     * remove a key that left the cache from the index, unless a concurrent put added it back: a put adds
+     * the key to the cache before the index, so either the key is seen in the cache here or the put adds it
+     * to the index again after this removal
+     */
+    private void unindex(String cacheKey) {
+        index.remove(cacheKey);
+        // asMap does not count a hit or a miss
+        if (cache.asMap().containsKey(cacheKey))
+            index.add(cacheKey);
     }
 
+    /**
+     * bucket names can not contain a '/' so the first one always separates the bucket from the key
+     */
+    private static String cacheKey(String bucket, String key) {
+        return bucket + PATH_SEPARATOR + key;
+    }
 }
@@ -0,0 +1,350 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.upplication.s3fs.util.S3Utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+
+/**
+ * Lists every object under a directory with concurrent flat listings of ranges of its keys.
+ * <p>
+ * The first pages are listed as usual: a directory of up to {@link #SEQUENTIAL_PAGES} pages is never split.
+ * Otherwise the keys after the last listed one are split where they stop sharing a common prefix. That
+ * prefix is found with a binary search over the first of these keys: a probe (StartAfter with MaxKeys 1)
+ * after everything that starts with a prefix of it tells if any key does not. The keys are then split at
+ * the first key found after each probe base + '0', base + '1', ..., base + 'z', the probes before the last
+ * listed key start after it instead. Each range (split key, next split key] is then listed on its own with
+ * StartAfter, up to parallelism ranges at a time.
+ * <p>
+ * The ranges cover the whole key space whatever the split keys are, a bad split only costs parallelism.
+ */
+class S3ParallelLister {
+
+    /**
+     * the characters probed after the prefix, in the order of S3 (UTF-8 binary)
+     */
+    static final String SPLIT_CHARACTERS = "-.0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    /**
+     * pages listed one after the other before the rest of the keys is split
+     */
+    static final int SEQUENTIAL_PAGES = 2;
+    /**
+     * the last code point, everything that starts with a key sorts before the key followed by it
+     */
+    static final String LAST_CHARACTER = new String(Character.toChars(Character.MAX_CODE_POINT));
+    /**
+     * pages listed ahead of the consumer by each range
+     */
+    private static final int PAGES_PER_RANGE = 2;
+    /**
+     * keys are sorted by S3 as UTF-8 bytes, not as UTF-16 chars like String#compareTo
+     */
+    static final Comparator<String> KEY_ORDER = (a, b) -> UnsignedBytes.lexicographicalComparator()
+            .compare(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+
+    private final S3FileSystem fileSystem;
+    private final AmazonS3 client;
+    private final int parallelism;
+    private final S3Utils s3Utils = new S3Utils();
+
+    S3ParallelLister(S3FileSystem fileSystem, int parallelism) {
+        this.fileSystem = fileSystem;
+        this.client = fileSystem.getClient();
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param dir     the directory to list
+     * @param ordered true to return the paths in key order, false to return them as soon as they are listed
+     * @return the objects under the directory, the listings are cancelled when the stream is closed
+     * @throws IOException if the split keys can not be found
+     */
+    Stream<Path> list(S3Path dir, boolean ordered) throws IOException {
+        String bucketName = dir.getFileStore().name();
+        String key = dir.getKey();
+        String prefix = key.isEmpty() || key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+
+        ListObjectsV2Result result = client.listObjectsV2(new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix));
+        List<S3ObjectSummary> listed = new ArrayList<>(result.getObjectSummaries());
+        for (int pages = 1; pages < SEQUENTIAL_PAGES && result.isTruncated(); pages++) {
+            result = client.listObjectsV2(new ListObjectsV2Request()
+                    .withBucketName(bucketName)
+                    .withPrefix(prefix)
+                    .withContinuationToken(result.getNextContinuationToken()));
+            listed.addAll(result.getObjectSummaries());
+        }
+        Page firstPage = new Page(toPaths(listed, prefix, null));
+        if (!result.isTruncated() || listed.isEmpty()) {
+            return firstPage.paths.stream();
+        }
+        String lastListed = listed.get(listed.size() - 1).getKey();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-parallel-list-%d")
+                .build());
+        try {
+            List<String> bounds = new ArrayList<>();
+            bounds.add(lastListed);
+            for (String splitKey : splitKeys(executor, bucketName, prefix, lastListed)) {
+                if (KEY_ORDER.compare(splitKey, lastListed) > 0)
+                    bounds.add(splitKey);
+            }
+
+            List<BlockingQueue<Page>> queues = new ArrayList<>();
+            BlockingQueue<Page> firstQueue = new ArrayBlockingQueue<>(ordered ? 2 : parallelism * PAGES_PER_RANGE + 2);
+            firstQueue.add(firstPage);
+            firstQueue.add(Page.END);
+            queues.add(firstQueue);
+            for (int i = 0; i < bounds.size(); i++) {
+                String startAfter = bounds.get(i);
+                String last = i + 1 < bounds.size() ? bounds.get(i + 1) : null;
+                BlockingQueue<Page> queue = firstQueue;
+                if (ordered) {
+                    queue = new ArrayBlockingQueue<>(PAGES_PER_RANGE + 1);
+                    queues.add(queue);
+                }
+                BlockingQueue<Page> rangeQueue = queue;
+                executor.submit(() -> listRange(bucketName, prefix, startAfter, last, rangeQueue));
+            }
+
+            Iterator<Path> paths = new Merge(queues, ordered ? 1 : bounds.size() + 1, executor);
+            int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paths, characteristics), false)
+                    .onClose(executor::shutdownNow);
+        } catch (IOException | RuntimeException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the split keys after the last listed key, sorted: the first key after the probes made where
+     * the keys after the last listed one stop sharing a prefix
+     */
+    private List<String> splitKeys(ExecutorService executor, String bucketName, String prefix, String lastListed) throws IOException {
+        String next = firstKeyAfter(bucketName, prefix, lastListed);
+        if (next == null)
+            return Collections.emptyList();
+        String base = commonPrefix(bucketName, prefix, next);
+
+        TreeSet<String> startAfters = new TreeSet<>(KEY_ORDER);
+        for (char character : SPLIT_CHARACTERS.toCharArray()) {
+            String candidate = base + character;
+            // every probe before the last listed key would find the next key
+            startAfters.add(KEY_ORDER.compare(candidate, lastListed) > 0 ? candidate : lastListed);
+        }
+        List<Future<String>> probes = new ArrayList<>();
+        for (String startAfter : startAfters) {
+            probes.add(executor.submit(() -> firstKeyAfter(bucketName, prefix, startAfter)));
+        }
+        TreeSet<String> keys = new TreeSet<>(KEY_ORDER);
+        for (Future<String> probe : probes) {
+            String found = get(probe, bucketName);
+            if (found != null)
+                keys.add(found);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * binary search of the longest prefix of the next key shared by every key after it: they all share a
+     * prefix of it if no key sorts after everything that starts with that prefix
+     *
+     * @param next the first key after the last listed one
+     * @return the longest common prefix of the keys after the last listed one
+     */
+    private String commonPrefix(String bucketName, String prefix, String next) {
+        int shared = prefix.length();
+        int notShared = next.length() + 1;
+        while (notShared - shared > 1) {
+            int length = (shared + notShared) >>> 1;
+            if (firstKeyAfter(bucketName, prefix, next.substring(0, length) + LAST_CHARACTER) == null)
+                shared = length;
+            else
+                notShared = length;
+        }
+        return next.substring(0, shared);
+    }
+
+    private String firstKeyAfter(String bucketName, String prefix, String startAfter) {
+        ListObjectsV2Result result = client.listObjectsV2(new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withStartAfter(startAfter)
+                .withMaxKeys(1));
+        return result.getObjectSummaries().isEmpty() ? null : result.getObjectSummaries().get(0).getKey();
+    }
+
+    private static String get(Future<String> probe, String bucketName) throws IOException {
+        try {
+            return probe.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while splitting the listing of " + bucketName);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * list the keys in (startAfter, last], to the end of the prefix if last is null
+     */
+    private void listRange(String bucketName, String prefix, String startAfter, String last, BlockingQueue<Page> queue) {
+        try {
+            ListObjectsV2Request request = new ListObjectsV2Request()
+                    .withBucketName(bucketName)
+                    .withPrefix(prefix)
+                    .withStartAfter(startAfter);
+            while (true) {
+                ListObjectsV2Result result = client.listObjectsV2(request);
+                List<S3ObjectSummary> summaries = result.getObjectSummaries();
+                queue.put(new Page(toPaths(summaries, prefix, last)));
+                boolean reachedLast = last != null && !summaries.isEmpty()
+                        && KEY_ORDER.compare(summaries.get(summaries.size() - 1).getKey(), last) >= 0;
+                if (!result.isTruncated() || reachedLast)
+                    break;
+                request = new ListObjectsV2Request()
+                        .withBucketName(bucketName)
+                        .withPrefix(prefix)
+                        .withContinuationToken(result.getNextContinuationToken());
+            }
+            queue.put(Page.END);
+        } catch (InterruptedException e) {
+            // the stream was closed
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            try {
+                queue.put(new Page(e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the paths of the summaries up to last included, without the marker object of the directory
+     */
+    private List<Path> toPaths(List<S3ObjectSummary> summaries, String prefix, String last) {
+        List<Path> paths = new ArrayList<>(summaries.size());
+        for (S3ObjectSummary summary : summaries) {
+            if (last != null && KEY_ORDER.compare(summary.getKey(), last) > 0)
+                break;
+            if (summary.getKey().equals(prefix))
+                continue;
+            S3Path path = new S3Path(fileSystem, PATH_SEPARATOR + summary.getBucketName(), fileSystem.key2Parts(summary.getKey()), summary);
+            path.setFileAttributes(s3Utils.toS3FileAttributes(summary, path.getKey()));
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * the pages of the queues one after the other, each queue is done once it returned ends END pages
+     */
+    private static class Merge implements Iterator<Path> {
+
+        private final List<BlockingQueue<Page>> queues;
+        private final int ends;
+        private final ExecutorService executor;
+        private Iterator<Path> page = Collections.emptyIterator();
+        private int queue;
+        private int ended;
+
+        private Merge(List<BlockingQueue<Page>> queues, int ends, ExecutorService executor) {
+            this.queues = queues;
+            this.ends = ends;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext()) {
+                if (queue == queues.size())
+                    return false;
+                Page next = take(queues.get(queue));
+                if (next.error != null) {
+                    executor.shutdownNow();
+                    throw next.error;
+                }
+                if (next == Page.END) {
+                    if (++ended == ends) {
+                        queue++;
+                        ended = 0;
+                    }
+                    if (queue == queues.size())
+                        executor.shutdownNow();
+                } else {
+                    page = next.paths.iterator();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return page.next();
+        }
+
+        private static Page take(BlockingQueue<Page> queue) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("interrupted while waiting for a listing page"));
+            }
+        }
+    }
+
+    private static class Page {
+
+        private static final Page END = new Page(Collections.emptyList());
+
+        private final List<Path> paths;
+        private final RuntimeException error;
+
+        private Page(List<Path> paths) {
+            this.paths = paths;
+            this.error = null;
+        }
+
+        private Page(RuntimeException error) {
+            this.paths = Collections.emptyList();
+            this.error = error;
+        }
+    }
+}
@@ -2,9 +2,7 @@ package com.upplication.s3fs;
 
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.net.UrlEscapers;
 import com.upplication.s3fs.attribute.S3BasicFileAttributes;
 
@@ -15,10 +13,9 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.file.*;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
-import static com.google.common.collect.Iterables.concat;
 import static java.lang.String.format;
 
 public class S3Path implements Path {
@@ -30,19 +27,35 @@ public class S3Path implements Path {
     private final S3FileStore fileStore;
 
     public S3ObjectSummary getObjectSummary() {
-        return S3ObjectSummaryCache.INSTANCE.get(getKey());
+        if (fileStore == null)
+            return null;
+        return fileSystem.getObjectSummaryCache().get(fileStore.name(), getKey());
     }
 
     /**
      * URI not encoded
      * Is the key for AmazonS3
      */
-    private String uri;
+    private final String uri;
+
+    /**
+     * start (inclusive) and end (exclusive) of every name in the uri, parsed once
+     */
+    private final int[] offsets;
+
+    /**
+     * the uri has no empty names, so the derived paths can be built from the offsets
+     */
+    private final boolean clean;
+
+    private final String key;
+
+    private int hash;
 
     /**
      * actual filesystem
      */
-    private S3FileSystem fileSystem;
+    private final S3FileSystem fileSystem;
 
     /**
      * S3BasicFileAttributes cache
@@ -51,7 +64,8 @@ public class S3Path implements Path {
 
     public S3Path(S3FileSystem fileSystem, String first, String[] keyParts, S3ObjectSummary objectSummary) {
         this(fileSystem, first, keyParts);
-        S3ObjectSummaryCache.INSTANCE.put(getKey(), objectSummary);
+        if (fileStore != null)
+            fileSystem.getObjectSummaryCache().put(fileStore.name(), getKey(), objectSummary);
     }
 
     /**
@@ -70,48 +84,93 @@ public class S3Path implements Path {
 
         boolean hasBucket = first.startsWith("/");
 
-
-        List<String> pathsURI = Lists
-                .newArrayList(Splitter.on(PATH_SEPARATOR)
-                        .omitEmptyStrings()
-                        .split(first));
+        StringBuilder uriBuilder = new StringBuilder();
+        if (hasBucket) {
+            uriBuilder.append(PATH_SEPARATOR);
+        }
+        String bucket = null;
+        for (int start = 0, end; start <= first.length(); start = end + 1) {
+            end = first.indexOf(PATH_SEPARATOR, start);
+            if (end == -1)
+                end = first.length();
+            if (end == start)
+                continue;
+            if (hasBucket && bucket == null)
+                bucket = first.substring(start, end);
+            else
+                uriBuilder.append(first, start, end).append(PATH_SEPARATOR);
+        }
 
         if (hasBucket) { // absolute path
-
-            Preconditions.checkArgument(pathsURI.size() >= 1, "path must start with bucket name");
-            Preconditions.checkArgument(!pathsURI.get(0).isEmpty(), "bucket name must be not empty");
-            String bucket = pathsURI.get(0);
-            this.fileStore = new S3FileStore(fileSystem, bucket);
+            Preconditions.checkArgument(bucket != null, "path must start with bucket name");
             // the filestore is not part of the uri
-            pathsURI.remove(0);
+            this.fileStore = fileSystem.getFileStore(bucket);
         } else {
             // relative uri
             this.fileStore = null;
         }
 
-        StringBuilder uriBuilder = new StringBuilder();
-        if (hasBucket) {
-            uriBuilder.append(PATH_SEPARATOR);
-        }
-        for (String path : pathsURI) {
-            uriBuilder.append(path + PATH_SEPARATOR);
-        }
         if (more != null) {
             for (String path : more) {
-                uriBuilder.append(path + PATH_SEPARATOR);
+                uriBuilder.append(path).append(PATH_SEPARATOR);
             }
         }
-        this.uri = normalizeURI(uriBuilder.toString());
+        String uri = normalizeURI(uriBuilder.toString());
         // remove last PATH_SEPARATOR
         if (!first.isEmpty() &&
                 // only first param and not ended with PATH_SEPARATOR
                 ((!first.endsWith(PATH_SEPARATOR) && (more == null || more.length == 0))
                         // we have more param and not ended with PATH_SEPARATOR
                         || more != null && more.length > 0 && !more[more.length - 1].endsWith(PATH_SEPARATOR))) {
-            this.uri = this.uri.substring(0, this.uri.length() - 1);
+            uri = uri.substring(0, uri.length() - 1);
         }
 
         this.fileSystem = fileSystem;
+        this.uri = uri;
+        this.offsets = parseOffsets(uri);
+        this.clean = !uri.contains("//") && (hasBucket || !uri.startsWith(PATH_SEPARATOR));
+        this.key = uri.startsWith(PATH_SEPARATOR) ? uri.substring(1) : uri;
+    }
+
+    /**
+     * Build a path derived from another one, the uri is already normalized and its names already parsed
+     */
+    private S3Path(S3FileSystem fileSystem, S3FileStore fileStore, String uri, int[] offsets) {
+        this.fileSystem = fileSystem;
+        this.fileStore = fileStore;
+        this.uri = uri;
+        this.offsets = offsets;
+        this.clean = true;
+        this.key = uri.startsWith(PATH_SEPARATOR) ? uri.substring(1) : uri;
+    }
+
+    private static int[] parseOffsets(String uri) {
+        int[] offsets = new int[8];
+        int count = 0;
+        for (int start = 0, end; start <= uri.length(); start = end + 1) {
+            end = uri.indexOf(PATH_SEPARATOR, start);
+            if (end == -1)
+                end = uri.length();
+            if (end == start)
+                continue;
+            if (count == offsets.length)
+                offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = start;
+            offsets[count++] = end;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private String name(int index) {
+        return uri.substring(offsets[2 * index], offsets[2 * index + 1]);
+    }
+
+    private boolean nameEquals(int index, S3Path other, int otherIndex) {
+        int start = offsets[2 * index];
+        int length = offsets[2 * index + 1] - start;
+        int otherStart = other.offsets[2 * otherIndex];
+        return length == other.offsets[2 * otherIndex + 1] - otherStart
+                && uri.regionMatches(start, other.uri, otherStart, length);
     }
 
     /**
@@ -132,13 +191,6 @@ public class S3Path implements Path {
      * @return the key for AmazonS3Client
      */
     public String getKey() {
-
-        String key = this.uri;
-
-        if (key.startsWith("/")) {
-            key = key.substring(1, key.length());
-        }
-
         return key;
     }
 
@@ -155,7 +207,7 @@ public class S3Path implements Path {
     @Override
     public Path getRoot() {
         if (isAbsolute()) {
-            return new S3Path(fileSystem, PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR);
+            return new S3Path(fileSystem, fileStore, PATH_SEPARATOR, new int[0]);
         }
 
         return null;
@@ -163,13 +215,13 @@ public class S3Path implements Path {
 
     @Override
     public Path getFileName() {
-        List<String> paths = uriToList();
-        if (paths.isEmpty()) {
+        int count = getNameCount();
+        if (count == 0) {
             // get FileName of root directory is null
             return null;
         }
-        String filename = paths.get(paths.size() - 1);
-        return new S3Path(fileSystem, filename);
+        String filename = name(count - 1);
+        return new S3Path(fileSystem, null, filename, new int[]{0, filename.length()});
     }
 
     @Override
@@ -195,6 +247,11 @@ public class S3Path implements Path {
         if (newUri.isEmpty())
             return null;
 
+        if (clean) {
+            // same names without the last one
+            return new S3Path(fileSystem, fileStore, newUri, Arrays.copyOf(offsets, offsets.length - 2));
+        }
+
         String filestore = isAbsolute() ? PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR : "";
 
         return new S3Path(fileSystem, filestore + newUri);
@@ -202,39 +259,28 @@ public class S3Path implements Path {
 
     @Override
     public int getNameCount() {
-        return uriToList().size();
+        return offsets.length / 2;
     }
 
     @Override
     public Path getName(int index) {
 
-        List<String> paths = uriToList();
+        int count = getNameCount();
 
-        if (index < 0 || index >= paths.size()) {
+        if (index < 0 || index >= count) {
             throw new IllegalArgumentException("index out of range");
         }
 
-        String path = paths.get(index);
-        StringBuilder pathsBuilder = new StringBuilder();
-        if (isAbsolute() && index == 0) {
-            pathsBuilder.append(PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR);
-        }
-        pathsBuilder.append(path);
-
-        if (index < paths.size() - 1) {
-            pathsBuilder.append(PATH_SEPARATOR);
-        }
-
+        String name = name(index);
         // if is the last path, check if end with path separator
-        if (index == paths.size() - 1 && this.uri.endsWith(PATH_SEPARATOR)) {
-            pathsBuilder.append(PATH_SEPARATOR);
-        }
+        boolean endsWithSeparator = index < count - 1 || this.uri.endsWith(PATH_SEPARATOR);
+        String nameUri = endsWithSeparator ? name + PATH_SEPARATOR : name;
 
-        return new S3Path(fileSystem, pathsBuilder.toString());
-    }
+        if (isAbsolute() && index == 0) {
+            return new S3Path(fileSystem, fileStore, PATH_SEPARATOR + nameUri, new int[]{1, 1 + name.length()});
+        }
 
-    private List<String> uriToList() {
-        return Splitter.on(PATH_SEPARATOR).omitEmptyStrings().splitToList(this.uri);
+        return new S3Path(fileSystem, null, nameUri, new int[]{0, name.length()});
     }
 
     /**
@@ -243,30 +289,44 @@ public class S3Path implements Path {
     @Override
     public Path subpath(int beginIndex, int endIndex) {
 
-        List<String> paths = uriToList();
+        int count = getNameCount();
 
-        if (beginIndex < 0 || endIndex > paths.size()) {
+        if (beginIndex < 0 || endIndex > count || beginIndex > endIndex) {
             throw new IllegalArgumentException("index out of range");
         }
 
-        List<String> pathSubList = paths.subList(beginIndex, endIndex);
+        boolean absolute = this.isAbsolute() && beginIndex == 0;
         StringBuilder pathsStringBuilder = new StringBuilder();
 
-        // build path string
+        if (beginIndex == endIndex) {
+            // no names: let the constructor deal with the bucket or the empty path
+            if (absolute) {
+                pathsStringBuilder.append(PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR);
+            }
+            String pathsResult = pathsStringBuilder.toString();
+            if (endIndex == count && !this.uri.endsWith(PATH_SEPARATOR)) {
+                pathsResult = pathsResult.substring(0, pathsResult.length() - 1);
+            }
+            return new S3Path(fileSystem, pathsResult);
+        }
 
-        if (this.isAbsolute() && beginIndex == 0) {
-            pathsStringBuilder.append(PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR);
+        // build path string
+        int[] subOffsets = new int[(endIndex - beginIndex) * 2];
+        if (absolute) {
+            pathsStringBuilder.append(PATH_SEPARATOR);
         }
-        for (String path : pathSubList) {
-            pathsStringBuilder.append(path).append(PATH_SEPARATOR);
+        for (int i = beginIndex; i < endIndex; i++) {
+            subOffsets[2 * (i - beginIndex)] = pathsStringBuilder.length();
+            pathsStringBuilder.append(uri, offsets[2 * i], offsets[2 * i + 1]);
+            subOffsets[2 * (i - beginIndex) + 1] = pathsStringBuilder.length();
+            pathsStringBuilder.append(PATH_SEPARATOR);
         }
-        String pathsResult = pathsStringBuilder.toString();
         // if the uri doesnt have last PATH_SEPARATOR we must remove it.
-        if (endIndex == paths.size() && !this.uri.endsWith(PATH_SEPARATOR)) {
-            pathsResult = pathsResult.substring(0, pathsResult.length() - 1);
+        if (endIndex == count && !this.uri.endsWith(PATH_SEPARATOR)) {
+            pathsStringBuilder.setLength(pathsStringBuilder.length() - 1);
         }
 
-        return new S3Path(fileSystem, pathsResult);
+        return new S3Path(fileSystem, absolute ? fileStore : null, pathsStringBuilder.toString(), subOffsets);
     }
 
     @Override
@@ -295,12 +355,8 @@ public class S3Path implements Path {
             return false;
         }
 
-        List<String> pathsOther = path.uriToList();
-        List<String> paths = this.uriToList();
-
-
-        for (int i = 0; i < pathsOther.size(); i++) {
-            if (!pathsOther.get(i).equals(paths.get(i))) {
+        for (int i = 0; i < path.getNameCount(); i++) {
+            if (!nameEquals(i, path, i)) {
                 return false;
             }
         }
@@ -335,15 +391,11 @@ public class S3Path implements Path {
 
         // check subkeys
 
-        List<String> pathsOther = path.uriToList();
-        List<String> paths = this.uriToList();
-
-
-        int i = pathsOther.size() - 1;
-        int j = paths.size() - 1;
+        int i = path.getNameCount() - 1;
+        int j = this.getNameCount() - 1;
         for (; i >= 0 && j >= 0; ) {
 
-            if (!pathsOther.get(i).equals(paths.get(j))) {
+            if (!nameEquals(j, path, i)) {
                 return false;
             }
             i--;
@@ -399,29 +451,35 @@ public class S3Path implements Path {
             return s3Path;
         }
 
-        List<String> othersPaths = s3Path.uriToList();
+        int othersCount = s3Path.getNameCount();
 
-        if (othersPaths.isEmpty()) { // other is relative and empty
+        if (othersCount == 0) { // other is relative and empty
             return parent;
         }
 
-        List<String> paths = this.uriToList();
-
         StringBuilder pathBuilder = new StringBuilder();
-        String lastPath = othersPaths.get(othersPaths.size() - 1);
+        String lastPath = s3Path.name(othersCount - 1);
+        boolean otherEndsWithSeparator = s3Path.uri.endsWith(PATH_SEPARATOR);
         if (isAbsolute()) {
             pathBuilder.append(PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR);
         }
-        for (String path : concat(paths.subList(0, paths.size() - 1), othersPaths)) {
-            pathBuilder.append(path);
-            if (!lastPath.equals(path) || s3Path.uri.endsWith(PATH_SEPARATOR)) {
-                pathBuilder.append(PATH_SEPARATOR);
-            }
+        for (int i = 0; i < getNameCount() - 1; i++) {
+            appendSiblingName(pathBuilder, name(i), lastPath, otherEndsWithSeparator);
+        }
+        for (int i = 0; i < othersCount; i++) {
+            appendSiblingName(pathBuilder, s3Path.name(i), lastPath, otherEndsWithSeparator);
         }
 
         return new S3Path(fileSystem, pathBuilder.toString());
     }
 
+    private static void appendSiblingName(StringBuilder pathBuilder, String name, String lastPath, boolean endsWithSeparator) {
+        pathBuilder.append(name);
+        if (!lastPath.equals(name) || endsWithSeparator) {
+            pathBuilder.append(PATH_SEPARATOR);
+        }
+    }
+
     @Override
     public Path resolveSibling(String other) {
         return resolveSibling(new S3Path(this.getFileSystem(), other));
@@ -534,22 +592,20 @@ public class S3Path implements Path {
         ImmutableList.Builder<Path> builder = ImmutableList.builder();
 
         if (isAbsolute()) {
-            builder.add(new S3Path(fileSystem, PATH_SEPARATOR + fileStore.name() + PATH_SEPARATOR));
+            builder.add(getRoot());
         }
 
-        List<String> paths = uriToList();
+        int count = getNameCount();
 
-        if (uriToList().isEmpty())
+        if (count == 0)
             return builder.build().iterator();
 
-        String lastPath = paths.get(paths.size() - 1);
+        String lastPath = name(count - 1);
 
-        for (String path : uriToList()) {
-            String pathFinal = path + PATH_SEPARATOR;
-            if (path.equals(lastPath) && !lastPath.endsWith(PATH_SEPARATOR)) {
-                pathFinal = pathFinal.substring(0, pathFinal.length() - 1);
-            }
-            builder.add(new S3Path(fileSystem, pathFinal));
+        for (int i = 0; i < count; i++) {
+            String path = name(i);
+            String pathFinal = path.equals(lastPath) ? path : path + PATH_SEPARATOR;
+            builder.add(new S3Path(fileSystem, null, pathFinal, new int[]{0, path.length()}));
         }
 
         return builder.build().iterator();
@@ -586,8 +642,12 @@ public class S3Path implements Path {
 
     @Override
     public int hashCode() {
-        int result = fileStore != null ? fileStore.name().hashCode() : 0;
-        result = 31 * result + uri.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = fileStore != null ? fileStore.name().hashCode() : 0;
+            result = 31 * result + uri.hashCode();
+            hash = result;
+        }
         return result;
     }
 
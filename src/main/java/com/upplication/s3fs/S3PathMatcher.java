@@ -0,0 +1,214 @@
+package com.upplication.s3fs;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+
+/**
+ * {@link PathMatcher} of the glob and regex syntaxes of {@link S3FileSystem#getPathMatcher(String)}.
+ * <p>
+ * Absolute paths are matched as /bucket/key and relative paths as they are, without a final slash.
+ * <p>
+ * As a {@link DirectoryStream.Filter} it matches the file name of the entries, like
+ * {@link java.nio.file.Files#newDirectoryStream(Path, String)}. Given to the directory stream of a S3 path, a glob
+ * of a single name only lists the directory under its literal prefix: with part-*.gz only the keys that start
+ * with part- are listed. The keys at any depth are matched by {@link S3FileSystemProvider#glob(Path, S3PathMatcher)}.
+ */
+public class S3PathMatcher implements PathMatcher, DirectoryStream.Filter<Path> {
+
+    private static final String GLOB_SYNTAX = "glob";
+    private static final String REGEX_SYNTAX = "regex";
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final boolean multipleNames;
+
+    private S3PathMatcher(Pattern pattern, String literalPrefix, boolean multipleNames) {
+        this.pattern = pattern;
+        this.literalPrefix = literalPrefix;
+        this.multipleNames = multipleNames;
+    }
+
+    /**
+     * @param syntaxAndPattern syntax:pattern with the syntax glob or regex
+     * @return the matcher
+     * @throws IllegalArgumentException      if there is no syntax or the pattern is invalid
+     * @throws UnsupportedOperationException if the syntax is not glob nor regex
+     */
+    public static S3PathMatcher of(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0)
+            throw new IllegalArgumentException("expected syntax:pattern but was " + syntaxAndPattern);
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String expression = syntaxAndPattern.substring(colon + 1);
+
+        if (syntax.equalsIgnoreCase(GLOB_SYNTAX))
+            return new S3PathMatcher(Pattern.compile(toRegexPattern(expression)), literalPrefix(expression),
+                    expression.contains(PATH_SEPARATOR));
+        if (syntax.equalsIgnoreCase(REGEX_SYNTAX))
+            return new S3PathMatcher(Pattern.compile(expression), "", false);
+        throw new UnsupportedOperationException("syntax '" + syntax + "' not recognized");
+    }
+
+    @Override
+    public boolean matches(Path path) {
+        return matches(toMatchedString(path));
+    }
+
+    @Override
+    public boolean accept(Path entry) {
+        Path fileName = entry.getFileName();
+        return fileName != null && matches(fileName);
+    }
+
+    /**
+     * @param relativeKey a key relative to a directory
+     * @return true if the key matches
+     */
+    boolean matches(String relativeKey) {
+        return pattern.matcher(relativeKey).matches();
+    }
+
+    /**
+     * @return the part of the glob before its first special character, empty for a regex
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * @return true if the glob has more than one name, so it matches paths below the first level
+     */
+    boolean hasMultipleNames() {
+        return multipleNames;
+    }
+
+    private static String toMatchedString(Path path) {
+        if (path instanceof S3Path && path.isAbsolute()) {
+            S3Path s3Path = (S3Path) path;
+            String key = s3Path.getKey();
+            return PATH_SEPARATOR + s3Path.getFileStore().name() + (key.isEmpty() ? "" : PATH_SEPARATOR + key);
+        }
+        String string = path.toString();
+        return string.length() > 1 && string.endsWith(PATH_SEPARATOR) ? string.substring(0, string.length() - 1) : string;
+    }
+
+    /**
+     * Translate a glob to a regex: * and ? do not cross names, ** does, [...] and [!...] are classes of
+     * one character and {a,b} are alternatives. A backslash escapes the next character.
+     *
+     * @param glob the glob
+     * @return the regex
+     * @throws PatternSyntaxException if the glob is invalid
+     */
+    static String toRegexPattern(String glob) {
+        StringBuilder regex = new StringBuilder("^");
+        boolean inGroup = false;
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == glob.length())
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    appendLiteral(regex, glob.charAt(i++));
+                    break;
+                case '*':
+                    if (i < glob.length() && glob.charAt(i) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    i = appendClass(regex, glob, i);
+                    break;
+                case '{':
+                    if (inGroup)
+                        throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        regex.append(')');
+                        inGroup = false;
+                    } else {
+                        appendLiteral(regex, c);
+                    }
+                    break;
+                case ',':
+                    if (inGroup)
+                        regex.append('|');
+                    else
+                        appendLiteral(regex, c);
+                    break;
+                default:
+                    appendLiteral(regex, c);
+            }
+        }
+        if (inGroup)
+            throw new PatternSyntaxException("Missing '}'", glob, glob.length() - 1);
+        return regex.append('$').toString();
+    }
+
+    /**
+     * @return the index after the end of the class
+     */
+    private static int appendClass(StringBuilder regex, String glob, int start) {
+        regex.append("[[^/]&&[");
+        int i = start;
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            regex.append('^');
+            i++;
+        }
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            if (c == ']') {
+                regex.append("]]");
+                return i;
+            }
+            if (c == '/')
+                throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+            if (c == '\\' || c == '[' || c == '^' || c == '&')
+                regex.append('\\');
+            regex.append(c);
+        }
+        throw new PatternSyntaxException("Missing ']'", glob, glob.length() - 1);
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if (REGEX_META_CHARACTERS.indexOf(c) != -1)
+            regex.append('\\');
+        regex.append(c);
+    }
+
+    /**
+     * @param glob the glob
+     * @return the characters before the first special character, with the escaped characters unescaped
+     */
+    static String literalPrefix(String glob) {
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{')
+                break;
+            if (c == '\\') {
+                if (++i == glob.length())
+                    break;
+                c = glob.charAt(i);
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.upplication.s3fs.attribute.S3BasicFileAttributes;
+import com.upplication.s3fs.util.S3Utils;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.upplication.s3fs.S3Path.PATH_SEPARATOR;
+
+/**
+ * Every file and directory under a directory, depth first, from a single flat listing of its keys.
+ * <p>
+ * The keys under a directory are contiguous in the listing, so the listing order is a depth first order once
+ * each directory is returned before its first key: directories without a marker object are synthesized from
+ * the keys under them. Only the directories of the current branch are remembered.
+ * <p>
+ * The keys below maxDepth are skipped: when the rest of a page is still under a directory at maxDepth, the
+ * next page starts after that directory instead. A small maxDepth over a tree with many keys per directory
+ * at maxDepth costs about one request per such directory, a tree with few keys per directory still costs
+ * one request per 1000 keys.
+ * <p>
+ * The paths carry their attributes and nothing is put in the {@link S3ObjectSummaryCache}.
+ */
+class S3TreeWalker implements Iterator<Path> {
+
+    private final S3FileSystem fileSystem;
+    private final String bucketName;
+    private final String dirKey;
+    private final int maxDepth;
+    private final S3Utils s3Utils = new S3Utils();
+    /**
+     * keys of the directories of the current branch with their final slash, the deepest last
+     */
+    private final Deque<String> branch = new ArrayDeque<>();
+    private final Deque<Path> ready = new ArrayDeque<>();
+    private ListObjectsV2Result current;
+    private Iterator<S3ObjectSummary> summaries = Collections.emptyIterator();
+    /**
+     * key of the directory at maxDepth whose keys are skipped, null when none is
+     */
+    private String skipped;
+
+    /**
+     * @param dir      the directory to walk, not returned
+     * @param maxDepth the maximum number of names of the returned paths relative to the directory
+     */
+    S3TreeWalker(S3Path dir, int maxDepth) {
+        String key = dir.getKey();
+        this.fileSystem = dir.getFileSystem();
+        this.bucketName = dir.getFileStore().name();
+        this.dirKey = key.isEmpty() || key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty()) {
+            if (summaries.hasNext()) {
+                S3ObjectSummary summary = summaries.next();
+                if (skipped == null || !summary.getKey().startsWith(skipped))
+                    add(summary);
+            } else if (current == null || current.isTruncated()) {
+                current = fileSystem.getClient().listObjectsV2(nextPageRequest());
+                summaries = current.getObjectSummaries().iterator();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return ready.removeFirst();
+    }
+
+    private ListObjectsV2Request nextPageRequest() {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(dirKey);
+        if (current == null)
+            return request;
+        List<S3ObjectSummary> page = current.getObjectSummaries();
+        if (skipped != null && !page.isEmpty() && page.get(page.size() - 1).getKey().startsWith(skipped))
+            // the next page would still be under the skipped directory
+            request.setStartAfter(skipped + S3ParallelLister.LAST_CHARACTER);
+        else
+            request.setContinuationToken(current.getNextContinuationToken());
+        return request;
+    }
+
+    /**
+     * close the directories that do not contain the key, open the missing ones and add the key
+     */
+    private void add(S3ObjectSummary summary) {
+        String key = summary.getKey();
+        if (key.equals(dirKey))
+            return;
+        while (!branch.isEmpty() && !key.startsWith(branch.peekLast()))
+            branch.removeLast();
+
+        int depth = branch.size();
+        int start = branch.isEmpty() ? dirKey.length() : branch.peekLast().length();
+        for (int slash = key.indexOf('/', start); slash != -1; slash = key.indexOf('/', slash + 1)) {
+            String directoryKey = key.substring(0, slash + 1);
+            branch.addLast(directoryKey);
+            depth++;
+            if (depth <= maxDepth) {
+                // the marker object of the directory has its last modified time
+                S3ObjectSummary directorySummary = slash == key.length() - 1 ? summary : directorySummary(directoryKey);
+                ready.addLast(toPath(directorySummary, key.substring(0, slash)));
+            }
+        }
+        if (!key.endsWith(PATH_SEPARATOR) && depth + 1 <= maxDepth)
+            ready.addLast(toPath(summary, key));
+        skipped = directoryAtMaxDepth(key);
+    }
+
+    /**
+     * @return the key of the directory at maxDepth that contains the key, null if the key is not below it
+     */
+    private String directoryAtMaxDepth(String key) {
+        int slash = dirKey.length() - 1;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            slash = key.indexOf('/', slash + 1);
+            if (slash == -1)
+                return null;
+        }
+        return slash == key.length() - 1 ? null : key.substring(0, slash + 1);
+    }
+
+    private S3Path toPath(S3ObjectSummary summary, String key) {
+        S3Path path = new S3Path(fileSystem, PATH_SEPARATOR + bucketName, fileSystem.key2Parts(key));
+        S3BasicFileAttributes attributes = s3Utils.toS3FileAttributes(summary, key);
+        path.setFileAttributes(attributes);
+        return path;
+    }
+
+    private S3ObjectSummary directorySummary(String directoryKey) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucketName);
+        summary.setKey(directoryKey);
+        return summary;
+    }
+}
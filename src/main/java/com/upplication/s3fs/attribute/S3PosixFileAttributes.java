@@ -2,11 +2,13 @@ package com.upplication.s3fs.attribute;
 
 import java.nio.file.attribute.*;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
 
 public class S3PosixFileAttributes extends S3BasicFileAttributes implements PosixFileAttributes  {
 
+    private Supplier<UserPrincipal> userPrincipalSupplier;
     private UserPrincipal userPrincipal;
     private GroupPrincipal groupPrincipal;
     private Set<PosixFilePermission> posixFilePermissions;
@@ -20,8 +22,20 @@ public class S3PosixFileAttributes extends S3BasicFileAttributes implements Posi
         this.posixFilePermissions = posixFilePermissionSet;
     }
 
+    /**
+     * The owner is resolved the first time {@link #owner()} is called, as it needs another request
+     */
+    public S3PosixFileAttributes(String key, FileTime lastModifiedTime, long size, boolean isDirectory, boolean isRegularFile, Supplier<UserPrincipal> userPrincipalSupplier, GroupPrincipal groupPrincipal, Set<PosixFilePermission> posixFilePermissionSet) {
+        this(key, lastModifiedTime, size, isDirectory, isRegularFile, (UserPrincipal) null, groupPrincipal, posixFilePermissionSet);
+        this.userPrincipalSupplier = userPrincipalSupplier;
+    }
+
     @Override
-    public UserPrincipal owner() {
+    public synchronized UserPrincipal owner() {
+        if (userPrincipalSupplier != null) {
+            this.userPrincipal = userPrincipalSupplier.get();
+            this.userPrincipalSupplier = null;
+        }
         return this.userPrincipal;
     }
 
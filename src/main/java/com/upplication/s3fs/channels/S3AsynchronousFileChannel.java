@@ -0,0 +1,449 @@
+package com.upplication.s3fs.channels;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.upplication.s3fs.S3Path;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_PART_SIZE;
+import static java.lang.String.format;
+
+/**
+ * {@link AsynchronousFileChannel} over an S3 object, every operation runs on the given executor
+ * so the caller thread never blocks on S3 and many operations of the same channel can be in flight.
+ * <p>
+ * A channel opened for reading serves each positional read with a ranged GET.
+ * <p>
+ * A channel opened for writing always writes a new object: the positional writes land in a local
+ * temporary file and each part of the object is uploaded as soon as all its bytes were written, so
+ * the upload goes on while the writes do. The parts written again after their upload, the parts
+ * with holes and the last part are uploaded on {@link #close()}, which completes the upload.
+ * Reading and writing the same channel is not supported.
+ */
+@Slf4j
+public class S3AsynchronousFileChannel extends AsynchronousFileChannel {
+
+    private static final long DEFAULT_PART_SIZE = 32 * 1024 * 1024; // 32MB
+    private static final long MIN_PART_SIZE = 5 * 1024 * 1024; // 5MB
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final S3Path path;
+    private final AmazonS3 client;
+    private final String bucket;
+    private final String key;
+    private final ExecutorService executor;
+    private final boolean writable;
+    /**
+     * guards open and activeWrites, close waits for the writes that already started
+     */
+    private final Object writeLock = new Object();
+    private final Object uploadLock = new Object();
+
+    // read mode
+    private final long readSize;
+
+    // write mode
+    private final long partSize;
+    private final Path backingFilePath;
+    private final FileChannel backingFileChannel;
+    private final AtomicLong writeSize = new AtomicLong();
+    private final ConcurrentMap<Integer, PartState> parts = new ConcurrentHashMap<>();
+    private volatile Throwable writeFailure;
+    private int activeWrites;
+    private String uploadId;
+
+    private volatile boolean open = true;
+
+    /**
+     * @param path       the path to read or write
+     * @param options    READ, or WRITE with CREATE, CREATE_NEW or TRUNCATE_EXISTING
+     * @param executor   runs the reads, the writes and the part uploads
+     * @param properties Properties with the optional part size
+     * @throws IOException if the path not exists for a read, or exists and CREATE_NEW is given
+     */
+    public S3AsynchronousFileChannel(S3Path path, Set<? extends OpenOption> options, ExecutorService executor, Properties properties) throws IOException {
+        this.path = path;
+        this.client = path.getFileSystem().getClient();
+        this.bucket = path.getFileStore().name();
+        this.key = path.getKey();
+        this.executor = executor;
+        this.writable = options.contains(StandardOpenOption.WRITE);
+
+        if (options.contains(StandardOpenOption.APPEND))
+            throw new UnsupportedOperationException("APPEND is not supported by asynchronous channels");
+        if (writable && options.contains(StandardOpenOption.READ))
+            throw new UnsupportedOperationException("an asynchronous channel can not read and write the same object");
+
+        if (!writable) {
+            this.readSize = headContentLength();
+            this.partSize = 0;
+            this.backingFilePath = null;
+            this.backingFileChannel = null;
+            return;
+        }
+
+        boolean exists = path.getFileSystem().provider().exists(path);
+        if (exists && options.contains(StandardOpenOption.CREATE_NEW))
+            throw new FileAlreadyExistsException(format("target already exists: %s", path));
+        else if (!exists && !options.contains(StandardOpenOption.CREATE_NEW) &&
+                !options.contains(StandardOpenOption.CREATE))
+            throw new NoSuchFileException(format("target not exists: %s", path));
+        else if (exists && !options.contains(StandardOpenOption.TRUNCATE_EXISTING))
+            throw new UnsupportedOperationException("an asynchronous channel can only write a new object, use TRUNCATE_EXISTING");
+
+        this.readSize = -1;
+        this.partSize = Math.max(MIN_PART_SIZE, Long.parseLong(properties.getProperty(MULTIPART_PART_SIZE, String.valueOf(DEFAULT_PART_SIZE))));
+        this.backingFilePath = Files.createTempFile("s3fs-async", null);
+        this.backingFileChannel = FileChannel.open(backingFilePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return writable ? writeSize.get() : readSize;
+    }
+
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        if (!writable)
+            throw new NonWritableChannelException();
+        if (size < 0)
+            throw new IllegalArgumentException("size must be positive: " + size);
+        ensureOpen();
+        // the file is not modified when size is not smaller than the current size
+        if (size < writeSize.get())
+            throw new IOException(format("truncating is not supported: %s", path));
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        ensureOpen();
+        // nothing is visible on S3 until the channel is closed
+    }
+
+    @Override
+    public <A> void lock(long position, long size, boolean shared, A attachment, CompletionHandler<FileLock, ? super A> handler) {
+        throw new UnsupportedOperationException("S3 objects can not be locked");
+    }
+
+    @Override
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("S3 objects can not be locked");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("S3 objects can not be locked");
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        checkRead(dst, position);
+        submit(() -> readNow(dst, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        checkRead(dst, position);
+        return executor.submit(() -> readNow(dst, position));
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        checkWrite(src, position);
+        submit(() -> writeNow(src, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src, long position) {
+        checkWrite(src, position);
+        return executor.submit(() -> writeNow(src, position));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * For a write channel: wait for the writes that already started, upload the remaining parts and
+     * complete the upload. The writes that did not start yet fail with {@link AsynchronousCloseException}.
+     *
+     * @throws IOException if a write or an upload failed, the upload is aborted
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (!open)
+                return;
+            open = false;
+        }
+        if (!writable)
+            return;
+        try {
+            awaitActiveWrites();
+            if (writeFailure != null)
+                throw new IOException(format("a write failed, the file is not uploaded: %s", path), writeFailure);
+            completeUpload();
+            path.getFileSystem().objectWritten(bucket, key);
+        } catch (IOException | RuntimeException e) {
+            abortUpload();
+            throw e;
+        } finally {
+            backingFileChannel.close();
+            Files.deleteIfExists(backingFilePath);
+        }
+    }
+
+    private int readNow(ByteBuffer dst, long position) throws IOException {
+        if (!open)
+            throw new AsynchronousCloseException();
+        if (position >= readSize)
+            return -1;
+        int length = (int) Math.min(dst.remaining(), readSize - position);
+        if (length == 0)
+            return 0;
+        GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(position, position + length - 1);
+        int read = 0;
+        try (S3Object object = client.getObject(request);
+             InputStream content = object.getObjectContent()) {
+            byte[] buffer = new byte[Math.min(length, READ_BUFFER_SIZE)];
+            while (read < length) {
+                int n = content.read(buffer, 0, Math.min(buffer.length, length - read));
+                if (n == -1)
+                    break;
+                dst.put(buffer, 0, n);
+                read += n;
+            }
+        } catch (AmazonS3Exception e) {
+            throw new IOException(format("Cannot read range %d-%d of file: %s", position, position + length - 1, path), e);
+        }
+        return read;
+    }
+
+    private int writeNow(ByteBuffer src, long position) throws IOException {
+        synchronized (writeLock) {
+            if (!open)
+                throw new AsynchronousCloseException();
+            activeWrites++;
+        }
+        try {
+            return writeParts(src, position);
+        } catch (IOException | RuntimeException e) {
+            writeFailure = e;
+            throw e;
+        } finally {
+            synchronized (writeLock) {
+                activeWrites--;
+                writeLock.notifyAll();
+            }
+        }
+    }
+
+    private int writeParts(ByteBuffer src, long position) throws IOException {
+        int written = 0;
+        while (src.hasRemaining()) {
+            written += backingFileChannel.write(src, position + written);
+        }
+        long end = position + written;
+        writeSize.accumulateAndGet(end, Math::max);
+
+        // count the bytes written in every part touched and upload the parts that are complete
+        for (long start = position; start < end; ) {
+            int partIndex = (int) (start / partSize);
+            long partEnd = Math.min((partIndex + 1) * partSize, end);
+            PartState part = parts.computeIfAbsent(partIndex, index -> new PartState());
+            long partWritten = part.written.addAndGet(partEnd - start);
+            synchronized (part) {
+                if (part.upload != null)
+                    part.rewritten = true;
+                else if (partWritten >= partSize)
+                    part.upload = uploadPart(partIndex, partSize);
+            }
+            start = partEnd;
+        }
+        return written;
+    }
+
+    private String getUploadId() {
+        synchronized (uploadLock) {
+            if (uploadId == null) {
+                InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucket, key)
+                        .withObjectMetadata(objectMetadata(-1));
+                uploadId = client.initiateMultipartUpload(request).getUploadId();
+            }
+            return uploadId;
+        }
+    }
+
+    private Future<PartETag> uploadPart(int partIndex, long length) {
+        return executor.submit(() -> {
+            log.info("Uploading file: {}, Part No: {}, Part Length: {}", path, partIndex + 1, length);
+            return client.uploadPart(new UploadPartRequest()
+                    .withBucketName(bucket)
+                    .withKey(key)
+                    .withUploadId(getUploadId())
+                    .withPartNumber(partIndex + 1)
+                    .withFile(backingFilePath.toFile())
+                    .withFileOffset(partIndex * partSize)
+                    .withPartSize(length)).getPartETag();
+        });
+    }
+
+    private void completeUpload() throws IOException {
+        long size = writeSize.get();
+        boolean multipart;
+        synchronized (uploadLock) {
+            multipart = uploadId != null;
+        }
+        if (!multipart && size <= partSize) {
+            client.putObject(new PutObjectRequest(bucket, key, backingFilePath.toFile())
+                    .withMetadata(objectMetadata(size)));
+            return;
+        }
+
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        List<Future<PartETag>> uploads = new ArrayList<>(partCount);
+        for (int partIndex = 0; partIndex < partCount; partIndex++) {
+            long length = Math.min(partSize, size - partIndex * partSize);
+            PartState part = parts.get(partIndex);
+            if (part == null || part.upload == null || part.rewritten || length < partSize)
+                uploads.add(uploadPart(partIndex, length));
+            else
+                uploads.add(part.upload);
+        }
+        List<PartETag> partETags = new ArrayList<>(partCount);
+        for (Future<PartETag> upload : uploads) {
+            partETags.add(get(upload));
+        }
+        client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, getUploadId(), partETags));
+    }
+
+    private void abortUpload() {
+        for (PartState part : parts.values()) {
+            if (part.upload != null)
+                part.upload.cancel(true);
+        }
+        synchronized (uploadLock) {
+            if (uploadId == null)
+                return;
+            try {
+                client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            } catch (RuntimeException e) {
+                log.warn("Failed to abort upload {} of file: {}", uploadId, path, e);
+            }
+        }
+    }
+
+    private void awaitActiveWrites() throws IOException {
+        synchronized (writeLock) {
+            try {
+                while (activeWrites > 0) {
+                    writeLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(format("interrupted while closing: %s", path));
+            }
+        }
+    }
+
+    private ObjectMetadata objectMetadata(long contentLength) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (contentLength >= 0)
+            metadata.setContentLength(contentLength);
+        Path fileName = path.getFileName();
+        if (fileName != null)
+            metadata.setContentType(new Tika().detect(fileName.toString()));
+        return metadata;
+    }
+
+    private long headContentLength() throws IOException {
+        try {
+            return client.getObjectMetadata(bucket, key).getContentLength();
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404)
+                throw new NoSuchFileException(format("target not exists: %s", path));
+            throw new IOException(format("Cannot access file: %s", path), e);
+        }
+    }
+
+    private <V, A> void submit(Callable<V> task, A attachment, CompletionHandler<V, ? super A> handler) {
+        executor.execute(() -> {
+            V result;
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                handler.failed(e, attachment);
+                return;
+            }
+            handler.completed(result, attachment);
+        });
+    }
+
+    private void checkRead(ByteBuffer dst, long position) {
+        if (writable)
+            throw new NonReadableChannelException();
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("read-only buffer");
+        if (position < 0)
+            throw new IllegalArgumentException("position must be positive: " + position);
+    }
+
+    private void checkWrite(ByteBuffer src, long position) {
+        if (!writable)
+            throw new NonWritableChannelException();
+        if (position < 0)
+            throw new IllegalArgumentException("position must be positive: " + position);
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+    private static <V> V get(Future<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while uploading");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to upload a part", e.getCause());
+        }
+    }
+
+    private static class PartState {
+
+        private final AtomicLong written = new AtomicLong();
+        private volatile Future<PartETag> upload;
+        private volatile boolean rewritten;
+    }
+}
@@ -2,11 +2,14 @@ package com.upplication.s3fs.channels;
 
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.util.S3Utils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.ReadableByteChannel;
@@ -14,36 +17,69 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 
 import static java.lang.String.format;
 
+/**
+ * File channel over a local temp file that is uploaded on close.
+ * <p>
+ * Like {@link S3SeekableByteChannel} the temp file is created and the existing content downloaded
+ * the first time the content is needed, opening an object to overwrite it never downloads it.
+ */
 public class S3FileChannel extends FileChannel {
 
     private S3Path path;
     private Set<? extends OpenOption> options;
     private FileChannel filechannel;
     private Path tempFile;
+    /**
+     * size of the existing content, not yet downloaded, or -1 when the channel starts empty
+     */
+    private long remoteSize = -1;
+    private long position;
 
     public S3FileChannel(S3Path path, Set<? extends OpenOption> options) throws IOException {
         this.path = path;
         this.options = Collections.unmodifiableSet(new HashSet<>(options));
-        String key = path.getKey();
-        boolean exists = path.getFileSystem().provider().exists(path);
+        boolean truncate = this.options.contains(StandardOpenOption.WRITE) && this.options.contains(StandardOpenOption.TRUNCATE_EXISTING);
 
-        if (exists && this.options.contains(StandardOpenOption.CREATE_NEW))
+        // the object is overwritten or created: no need to know if it exists
+        if (truncate && this.options.contains(StandardOpenOption.CREATE) && !this.options.contains(StandardOpenOption.CREATE_NEW))
+            return;
+
+        Optional<S3ObjectSummary> summary = new S3Utils().getFileSummary(path);
+        if (summary.isPresent() && this.options.contains(StandardOpenOption.CREATE_NEW))
             throw new FileAlreadyExistsException(format("target already exists: %s", path));
-        else if (!exists && !this.options.contains(StandardOpenOption.CREATE_NEW) &&
+        else if (!summary.isPresent() && !this.options.contains(StandardOpenOption.CREATE_NEW) &&
                 !this.options.contains(StandardOpenOption.CREATE))
             throw new NoSuchFileException(format("target not exists: %s", path));
 
+        if (summary.isPresent() && !truncate)
+            remoteSize = summary.get().getSize();
+    }
+
+    /**
+     * create the temp file, with the existing content if any, the first time the content is needed
+     *
+     * @return the channel of the temp file
+     * @throws IOException if the temp file can not be created or the download fails
+     */
+    private FileChannel filechannel() throws IOException {
+        if (!isOpen())
+            throw new ClosedChannelException();
+        if (filechannel != null)
+            return filechannel;
+
+        String key = path.getKey();
         tempFile = Files.createTempFile("temp-s3-", key.replaceAll("/", "_"));
         boolean removeTempFile = true;
         try {
-            if (exists) {
+            if (remoteSize != -1) {
                 try (S3Object object = path.getFileSystem()
                         .getClient()
-                        .getObject(path.getFileStore().getBucket().getName(), key)) {
+                        .getObject(path.getFileStore().name(), key)) {
                     Files.copy(object.getObjectContent(), tempFile, StandardCopyOption.REPLACE_EXISTING);
                 }
             }
@@ -51,102 +87,128 @@ public class S3FileChannel extends FileChannel {
             Set<? extends OpenOption> fileChannelOptions = new HashSet<>(this.options);
             fileChannelOptions.remove(StandardOpenOption.CREATE_NEW);
             filechannel = FileChannel.open(tempFile, fileChannelOptions);
+            if (position != 0)
+                filechannel.position(position);
             removeTempFile = false;
         } finally {
             if (removeTempFile) {
                 Files.deleteIfExists(tempFile);
             }
         }
+        return filechannel;
     }
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
-        return filechannel.read(dst);
+        return filechannel().read(dst);
     }
 
     @Override
     public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
-        return filechannel.read(dsts, offset, length);
+        return filechannel().read(dsts, offset, length);
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return filechannel.write(src);
+        return filechannel().write(src);
     }
 
     @Override
     public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
-        return filechannel.write(srcs, offset, length);
+        return filechannel().write(srcs, offset, length);
     }
 
     @Override
     public long position() throws IOException {
-        return filechannel.position();
+        if (filechannel == null && isOpen())
+            return options.contains(StandardOpenOption.APPEND) ? size() : position;
+        return filechannel().position();
     }
 
     @Override
     public FileChannel position(long newPosition) throws IOException {
-        return filechannel.position(newPosition);
+        if (filechannel == null && isOpen()) {
+            if (newPosition < 0)
+                throw new IllegalArgumentException("negative position: " + newPosition);
+            position = newPosition;
+            return this;
+        }
+        return filechannel().position(newPosition);
     }
 
     @Override
     public long size() throws IOException {
-        return filechannel.size();
+        if (filechannel == null && isOpen())
+            return Math.max(remoteSize, 0);
+        return filechannel().size();
     }
 
     @Override
     public FileChannel truncate(long size) throws IOException {
-        return filechannel.truncate(size);
+        // truncating to 0 before any read or write discards the existing content without downloading it
+        if (filechannel == null && isOpen() && size == 0 && options.contains(StandardOpenOption.WRITE)) {
+            remoteSize = -1;
+            position = 0;
+            return this;
+        }
+        return filechannel().truncate(size);
     }
 
     @Override
     public void force(boolean metaData) throws IOException {
-        filechannel.force(metaData);
+        filechannel().force(metaData);
     }
 
     @Override
     public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
-        return filechannel.transferTo(position, count, target);
+        return filechannel().transferTo(position, count, target);
     }
 
     @Override
     public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
-        return filechannel.transferFrom(src, position, count);
+        return filechannel().transferFrom(src, position, count);
     }
 
     @Override
     public int read(ByteBuffer dst, long position) throws IOException {
-        return filechannel.read(dst, position);
+        return filechannel().read(dst, position);
     }
 
     @Override
     public int write(ByteBuffer src, long position) throws IOException {
-        return filechannel.write(src, position);
+        return filechannel().write(src, position);
     }
 
     @Override
     public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
-        return filechannel.map(mode, position, size);
+        return filechannel().map(mode, position, size);
     }
 
     @Override
     public FileLock lock(long position, long size, boolean shared) throws IOException {
-        return filechannel.lock(position, size, shared);
+        return filechannel().lock(position, size, shared);
     }
 
     @Override
     public FileLock tryLock(long position, long size, boolean shared) throws IOException {
-        return filechannel.tryLock(position, size, shared);
+        return filechannel().tryLock(position, size, shared);
     }
 
     @Override
     public void implCloseChannel() throws IOException {
         super.close();
-        filechannel.close();
-        if (!this.options.contains(StandardOpenOption.READ)) {
-            sync();
+        try {
+            if (filechannel != null)
+                filechannel.close();
+            // the existing content was never read nor written: there is nothing to upload
+            boolean unchanged = filechannel == null && remoteSize != -1;
+            if (!this.options.contains(StandardOpenOption.READ) && !unchanged) {
+                sync();
+            }
+        } finally {
+            if (tempFile != null)
+                Files.deleteIfExists(tempFile);
         }
-        Files.deleteIfExists(tempFile);
     }
 
     /**
@@ -155,6 +217,10 @@ public class S3FileChannel extends FileChannel {
      * @throws IOException if the tempFile fails to open a newInputStream
      */
     private void sync() throws IOException {
+        if (tempFile == null) {
+            // never written, the channel is still empty
+            tempFile = Files.createTempFile("temp-s3-", path.getKey().replaceAll("/", "_"));
+        }
         S3Uploader.builder()
                 .path(path)
                 .metadata(new ObjectMetadata())
@@ -0,0 +1,180 @@
+package com.upplication.s3fs.channels;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.upplication.s3fs.AmazonS3Factory.READ_AHEAD_PARTS;
+import static com.upplication.s3fs.AmazonS3Factory.READ_AHEAD_PART_SIZE;
+import static java.lang.String.format;
+
+/**
+ * {@link InputStream} that splits the object in fixed size ranges and downloads the next ranges
+ * in parallel while the caller consumes the current one.
+ * <p>
+ * The first range is downloaded when the stream is opened and tells us the size of the object.
+ * The next ranges are downloaded on an executor shared with the other streams, objects that fit
+ * in a single range never use it.
+ */
+public class S3ReadAheadInputStream extends InputStream {
+
+    private static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024; // 8MB
+    private static final int DEFAULT_PARTS = 4;
+
+    private final AmazonS3 client;
+    private final S3Path path;
+    private final String bucket;
+    private final String key;
+    private final int partSize;
+    private final int window;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private long size;
+    private String eTag;
+    private long nextPartStart;
+    private byte[] current;
+    private int currentPosition;
+    private boolean closed;
+
+    /**
+     * Open the path for reading and download the first range
+     *
+     * @param path       S3Path to read, must be a file
+     * @param properties Properties with the optional part size and window
+     * @param executor   the executor of the downloads of the next ranges
+     * @throws IOException if the path not exists, is a directory or an I/O error occurs
+     */
+    public S3ReadAheadInputStream(S3Path path, Properties properties, ExecutorService executor) throws IOException {
+        this.path = path;
+        this.client = path.getFileSystem().getClient();
+        this.bucket = path.getFileStore().name();
+        this.key = path.getKey();
+        this.partSize = Integer.parseInt(properties.getProperty(READ_AHEAD_PART_SIZE, String.valueOf(DEFAULT_PART_SIZE)));
+        this.window = Math.max(1, Integer.parseInt(properties.getProperty(READ_AHEAD_PARTS, String.valueOf(DEFAULT_PARTS))));
+        this.executor = executor;
+
+        openFirstPart();
+        scheduleParts();
+    }
+
+    private void openFirstPart() throws IOException {
+        try (S3Object object = client.getObject(new GetObjectRequest(bucket, key).withRange(0, partSize - 1L))) {
+            if (object.getObjectContent() == null)
+                throw new IOException(format("The specified path is a directory: %s", path));
+            this.size = object.getObjectMetadata().getInstanceLength();
+            this.eTag = object.getObjectMetadata().getETag();
+            this.current = IOUtils.toByteArray(object.getObjectContent());
+            this.nextPartStart = current.length;
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404)
+                throw new NoSuchFileException(path.toString());
+            // an empty object can not satisfy any range
+            if (e.getStatusCode() == 416) {
+                this.current = new byte[0];
+                return;
+            }
+            throw new IOException(format("Cannot access file: %s", path), e);
+        }
+    }
+
+    /**
+     * keep up to window ranges downloading or downloaded ahead of the caller
+     */
+    private void scheduleParts() {
+        while (pending.size() < window && nextPartStart < size) {
+            final long start = nextPartStart;
+            final long end = Math.min(start + partSize, size) - 1;
+            pending.add(executor.submit(() -> fetch(start, end)));
+            nextPartStart = end + 1;
+        }
+    }
+
+    private byte[] fetch(long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(start, end);
+        if (eTag != null)
+            request.withMatchingETagConstraint(eTag);
+
+        try (S3Object object = client.getObject(request)) {
+            // the constraint was not satisfied: the object changed while we were reading it
+            if (object == null)
+                throw new IOException(format("File modified while reading: %s", path));
+            byte[] content = IOUtils.toByteArray(object.getObjectContent());
+            if (content.length != end - start + 1)
+                throw new IOException(format("Expected %d bytes at position %d but got %d: %s", end - start + 1, start, content.length, path));
+            return content;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (len == 0)
+            return 0;
+        while (currentPosition == current.length) {
+            if (!nextPart())
+                return -1;
+        }
+        int bytesRead = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current, currentPosition, b, off, bytesRead);
+        currentPosition += bytesRead;
+        return bytesRead;
+    }
+
+    private boolean nextPart() throws IOException {
+        Future<byte[]> next = pending.poll();
+        if (next == null)
+            return false;
+        try {
+            current = next.get();
+            currentPosition = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading: " + path);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(format("Cannot read file: %s", path), e.getCause());
+        }
+        scheduleParts();
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return closed ? 0 : current.length - currentPosition;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,201 @@
+package com.upplication.s3fs.channels;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.util.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.upplication.s3fs.AmazonS3Factory.READ_BLOCK_CACHE_SIZE;
+import static com.upplication.s3fs.AmazonS3Factory.READ_BLOCK_SIZE;
+import static java.lang.String.format;
+
+/**
+ * Read only {@link SeekableByteChannel} that serves {@link #read(ByteBuffer)} with HTTP Range requests.
+ * <p>
+ * The object is split in blocks of a fixed size and only the blocks touched by a read are downloaded.
+ * The last blocks read are kept in a bounded LRU cache, so reading the footer of a big object
+ * costs a few KB and no local disk.
+ */
+public class S3ReadOnlySeekableByteChannel implements SeekableByteChannel {
+
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024; // 64KB
+    private static final int DEFAULT_BLOCK_CACHE_SIZE = 16;
+
+    private final S3Path path;
+    private final long size;
+    private final int blockSize;
+    private final int maxCachedBlocks;
+    private final BlockCache blocks;
+
+    private long position;
+    private boolean open = true;
+
+    /**
+     * Open an existing file for reading
+     *
+     * @param path       the path to read
+     * @param properties Properties with the optional block size and block cache size
+     * @throws IOException if the path not exists or an I/O error occurs
+     */
+    public S3ReadOnlySeekableByteChannel(S3Path path, Properties properties) throws IOException {
+        this.path = path;
+        this.blockSize = Integer.parseInt(properties.getProperty(READ_BLOCK_SIZE, String.valueOf(DEFAULT_BLOCK_SIZE)));
+        this.maxCachedBlocks = Integer.parseInt(properties.getProperty(READ_BLOCK_CACHE_SIZE, String.valueOf(DEFAULT_BLOCK_CACHE_SIZE)));
+        this.blocks = new BlockCache(maxCachedBlocks);
+        try {
+            this.size = path.getFileSystem()
+                    .getClient()
+                    .getObjectMetadata(path.getFileStore().name(), path.getKey())
+                    .getContentLength();
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404)
+                throw new NoSuchFileException(format("target not exists: %s", path));
+            throw new IOException(format("Cannot access file: %s", path), e);
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size)
+            return -1;
+
+        int bytesRead = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / blockSize;
+            byte[] block = blocks.get(index);
+            if (block == null) {
+                long lastIndex = Math.min((position + dst.remaining() - 1) / blockSize, (size - 1) / blockSize);
+                block = fetchBlocks(index, lastIndex);
+            }
+            int offset = (int) (position - index * blockSize);
+            int length = Math.min(block.length - offset, dst.remaining());
+            dst.put(block, offset, length);
+            position += length;
+            bytesRead += length;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Download the contiguous run of missing blocks starting at firstIndex with a single ranged GET
+     * and store them in the cache.
+     *
+     * @param firstIndex the first block to download, must not be cached
+     * @param lastIndex  the last block the current read will need
+     * @return the content of the block at firstIndex
+     */
+    private byte[] fetchBlocks(long firstIndex, long lastIndex) throws IOException {
+        long endIndex = firstIndex;
+        // never fetch more than the cache can hold and stop at the first block we already have
+        while (endIndex < lastIndex && endIndex - firstIndex + 1 < maxCachedBlocks && !blocks.containsKey(endIndex + 1)) {
+            endIndex++;
+        }
+
+        long start = firstIndex * blockSize;
+        long end = Math.min((endIndex + 1) * blockSize, size) - 1;
+        GetObjectRequest request = new GetObjectRequest(path.getFileStore().name(), path.getKey())
+                .withRange(start, end);
+
+        byte[] content;
+        try (S3Object object = path.getFileSystem().getClient().getObject(request)) {
+            content = IOUtils.toByteArray(object.getObjectContent());
+        } catch (AmazonS3Exception e) {
+            throw new IOException(format("Cannot read range %d-%d of file: %s", start, end, path), e);
+        }
+
+        byte[] first = null;
+        for (long index = firstIndex; index <= endIndex; index++) {
+            int from = (int) ((index - firstIndex) * blockSize);
+            if (from >= content.length)
+                break;
+            int to = Math.min(from + blockSize, content.length);
+            byte[] block = new byte[to - from];
+            System.arraycopy(content, from, block, 0, block.length);
+            blocks.put(index, block);
+            if (first == null)
+                first = block;
+        }
+        if (first == null)
+            throw new IOException(format("Unexpected end of file at position %d: %s", start, path));
+        return first;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0)
+            throw new IllegalArgumentException("position must be positive: " + newPosition);
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        blocks.clear();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen())
+            throw new ClosedChannelException();
+    }
+
+    /**
+     * the blocks by index, in access order: the least recently read block is evicted first
+     */
+    private static class BlockCache extends LinkedHashMap<Long, byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxBlocks;
+
+        private BlockCache(int maxBlocks) {
+            super(maxBlocks, 0.75f, true);
+            this.maxBlocks = maxBlocks;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > maxBlocks;
+        }
+    }
+}
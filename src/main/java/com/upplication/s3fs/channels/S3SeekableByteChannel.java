@@ -6,24 +6,41 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 
 import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.util.S3Utils;
 import org.apache.tika.Tika;
 
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
-
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Seekable channel over a local temp file that is uploaded on close.
+ * <p>
+ * The channel is opened lazily: the temp file is created and the existing content downloaded
+ * the first time the content is needed, so opening an object only to get its size or to
+ * overwrite it (TRUNCATE_EXISTING) never downloads it.
+ */
 public class S3SeekableByteChannel implements SeekableByteChannel {
 
     private S3Path path;
     private Set<? extends OpenOption> options;
     private SeekableByteChannel seekable;
     private Path tempFile;
+    /**
+     * size of the existing content, not yet downloaded, or -1 when the channel starts empty
+     */
+    private long remoteSize = -1;
+    private long position;
+    private boolean open = true;
 
     /**
      * Open or creates a file, returning a seekable byte channel
@@ -35,22 +52,43 @@ public class S3SeekableByteChannel implements SeekableByteChannel {
     public S3SeekableByteChannel(S3Path path, Set<? extends OpenOption> options) throws IOException {
         this.path = path;
         this.options = Collections.unmodifiableSet(new HashSet<>(options));
-        String key = path.getKey();
-        boolean exists = path.getFileSystem().provider().exists(path);
+        boolean truncate = this.options.contains(StandardOpenOption.WRITE) && this.options.contains(StandardOpenOption.TRUNCATE_EXISTING);
+
+        // the object is overwritten or created: no need to know if it exists
+        if (truncate && this.options.contains(StandardOpenOption.CREATE) && !this.options.contains(StandardOpenOption.CREATE_NEW))
+            return;
 
-        if (exists && this.options.contains(StandardOpenOption.CREATE_NEW))
+        Optional<S3ObjectSummary> summary = new S3Utils().getFileSummary(path);
+        if (summary.isPresent() && this.options.contains(StandardOpenOption.CREATE_NEW))
             throw new FileAlreadyExistsException(format("target already exists: %s", path));
-        else if (!exists && !this.options.contains(StandardOpenOption.CREATE_NEW) &&
+        else if (!summary.isPresent() && !this.options.contains(StandardOpenOption.CREATE_NEW) &&
                 !this.options.contains(StandardOpenOption.CREATE))
             throw new NoSuchFileException(format("target not exists: %s", path));
 
+        if (summary.isPresent() && !truncate)
+            remoteSize = summary.get().getSize();
+    }
+
+    /**
+     * create the temp file, with the existing content if any, the first time the content is needed
+     *
+     * @return the channel of the temp file
+     * @throws IOException if the temp file can not be created or the download fails
+     */
+    private SeekableByteChannel seekable() throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+        if (seekable != null)
+            return seekable;
+
+        String key = path.getKey();
         tempFile = Files.createTempFile("temp-s3-", key.replaceAll("/", "_"));
         boolean removeTempFile = true;
         try {
-            if (exists) {
+            if (remoteSize != -1) {
                 try (S3Object object = path.getFileSystem()
                         .getClient()
-                        .getObject(path.getFileStore().getBucket().getName(), key)) {
+                        .getObject(path.getFileStore().name(), key)) {
                     Files.copy(object.getObjectContent(), tempFile, StandardCopyOption.REPLACE_EXISTING);
                 }
             }
@@ -58,26 +96,31 @@ public class S3SeekableByteChannel implements SeekableByteChannel {
             Set<? extends OpenOption> seekOptions = new HashSet<>(this.options);
             seekOptions.remove(StandardOpenOption.CREATE_NEW);
             seekable = Files.newByteChannel(tempFile, seekOptions);
+            if (position != 0)
+                seekable.position(position);
             removeTempFile = false;
         } finally {
             if (removeTempFile) {
                 Files.deleteIfExists(tempFile);
             }
         }
+        return seekable;
     }
 
     @Override
     public boolean isOpen() {
-        return seekable.isOpen();
+        return open;
     }
 
     @Override
     public void close() throws IOException {
         try {
-            if (!seekable.isOpen())
+            if (!open)
                 return;
 
-            seekable.close();
+            open = false;
+            if (seekable != null)
+                seekable.close();
 
             if (options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
                 path.getFileSystem().provider().delete(path);
@@ -88,10 +131,16 @@ public class S3SeekableByteChannel implements SeekableByteChannel {
                 return;
             }
 
+            // the existing content was never read nor written: there is nothing to upload
+            if (seekable == null && remoteSize != -1) {
+                return;
+            }
+
             sync();
 
         } finally {
-            Files.deleteIfExists(tempFile);
+            if (tempFile != null)
+                Files.deleteIfExists(tempFile);
         }
     }
 
@@ -101,6 +150,10 @@ public class S3SeekableByteChannel implements SeekableByteChannel {
      * @throws IOException if the tempFile fails to open a newInputStream
      */
     public void sync() throws IOException {
+        if (tempFile == null) {
+            // never written, the channel is still empty
+            tempFile = Files.createTempFile("temp-s3-", path.getKey().replaceAll("/", "_"));
+        }
         try (InputStream stream = new BufferedInputStream(Files.newInputStream(tempFile))) {
             ObjectMetadata metadata = new ObjectMetadata();
             metadata.setContentLength(Files.size(tempFile));
@@ -111,36 +164,56 @@ public class S3SeekableByteChannel implements SeekableByteChannel {
             String bucket = path.getFileStore().name();
             String key = path.getKey();
             path.getFileSystem().getClient().putObject(bucket, key, stream, metadata);
+            path.getFileSystem().objectWritten(bucket, key);
         }
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return seekable.write(src);
+        return seekable().write(src);
     }
 
     @Override
     public SeekableByteChannel truncate(long size) throws IOException {
-        return seekable.truncate(size);
+        // truncating to 0 before any read or write discards the existing content without downloading it
+        if (seekable == null && open && size == 0 && options.contains(StandardOpenOption.WRITE)) {
+            remoteSize = -1;
+            position = 0;
+            return this;
+        }
+        return seekable().truncate(size);
     }
 
+    /**
+     * the size of an object that was not read nor written yet is the size of its summary
+     */
     @Override
     public long size() throws IOException {
-        return seekable.size();
+        if (seekable == null && open)
+            return Math.max(remoteSize, 0);
+        return seekable().size();
     }
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
-        return seekable.read(dst);
+        return seekable().read(dst);
     }
 
     @Override
     public SeekableByteChannel position(long newPosition) throws IOException {
-        return seekable.position(newPosition);
+        if (seekable == null && open) {
+            if (newPosition < 0)
+                throw new IllegalArgumentException("negative position: " + newPosition);
+            position = newPosition;
+            return this;
+        }
+        return seekable().position(newPosition);
     }
 
     @Override
     public long position() throws IOException {
-        return seekable.position();
+        if (seekable == null && open)
+            return options.contains(StandardOpenOption.APPEND) ? size() : position;
+        return seekable().position();
     }
-}
\ No newline at end of file
+}
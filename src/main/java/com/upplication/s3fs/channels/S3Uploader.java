@@ -25,6 +25,7 @@ public class S3Uploader {
             String bucket = path.getFileStore().name();
             String key = path.getKey();
             path.getFileSystem().getClient().putObject(bucket, key, stream, metadata);
+            path.getFileSystem().objectWritten(bucket, key);
         }
     }
 
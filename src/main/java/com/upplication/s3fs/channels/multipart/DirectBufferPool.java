@@ -0,0 +1,60 @@
+package com.upplication.s3fs.channels.multipart;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct buffers shared by the streaming uploads of a provider: a buffer given back is reused by the next
+ * upload that needs one of the same capacity instead of allocating and zeroing new off-heap memory.
+ * At most maxIdle buffers are kept, the others are left to the garbage collector.
+ */
+public class DirectBufferPool {
+
+    private final int maxIdle;
+    private final Map<Integer, Deque<ByteBuffer>> idle = new HashMap<>();
+    private int idleCount;
+
+    /**
+     * @param maxIdle maximum number of buffers kept while no upload uses them
+     */
+    public DirectBufferPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @param capacity the capacity of the buffer
+     * @return a cleared direct buffer, reused when one of this capacity was given back
+     */
+    public ByteBuffer take(int capacity) {
+        synchronized (this) {
+            Deque<ByteBuffer> buffers = idle.get(capacity);
+            ByteBuffer buffer = buffers == null ? null : buffers.poll();
+            if (buffer != null) {
+                idleCount--;
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * @param buffer a buffer no longer used, heap buffers are ignored
+     */
+    public synchronized void give(ByteBuffer buffer) {
+        if (!buffer.isDirect() || idleCount >= maxIdle)
+            return;
+        idle.computeIfAbsent(buffer.capacity(), capacity -> new ArrayDeque<>()).push(buffer);
+        idleCount++;
+    }
+
+    /**
+     * @return the number of buffers kept for reuse
+     */
+    public synchronized int idle() {
+        return idleCount;
+    }
+}
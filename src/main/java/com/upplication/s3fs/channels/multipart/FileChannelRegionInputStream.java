@@ -0,0 +1,87 @@
+package com.upplication.s3fs.channels.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link InputStream} over a region of a {@link FileChannel} that uses positional reads,
+ * so the position of the channel is never changed and several regions can be read in parallel.
+ * <p>
+ * Nothing is buffered: the bytes are read straight into the array given by the caller.
+ * Mark and reset are supported so the request can be retried by the client.
+ */
+class FileChannelRegionInputStream extends InputStream {
+
+    private final FileChannel fileChannel;
+    private final long end;
+    private final ByteBuffer single = ByteBuffer.allocate(1);
+
+    private long position;
+    private long mark;
+
+    /**
+     * @param fileChannel the channel to read, not closed by this stream
+     * @param start       the first position of the region
+     * @param length      the length of the region
+     */
+    FileChannelRegionInputStream(FileChannel fileChannel, long start, long length) {
+        this.fileChannel = fileChannel;
+        this.position = start;
+        this.mark = start;
+        this.end = start + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        single.clear();
+        return read(single) == -1 ? -1 : single.get(0) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        return read(ByteBuffer.wrap(b, off, len));
+    }
+
+    private int read(ByteBuffer dst) throws IOException {
+        if (position >= end)
+            return -1;
+        if (dst.remaining() > end - position)
+            dst.limit(dst.position() + (int) (end - position));
+        int read = fileChannel.read(dst, position);
+        if (read == -1)
+            throw new IOException("Unexpected end of file at position " + position);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+}
@@ -0,0 +1,153 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Server side copy of a large object with UploadPartCopy: the parts are copied in parallel
+ * on a bounded pool, S3 does not limit the size of the object like a single CopyObject (5GB).
+ * <p>
+ * The metadata of the source (user metadata, content type...) is set on the target and every
+ * part is only copied while the source keeps the ETag read at the start of the copy, or the ETag
+ * of the metadata given to the builder when the caller already read it.
+ */
+@Slf4j
+public class S3MultipartCopier {
+
+    private static final long DEFAULT_PART_SIZE = 128 * 1024 * 1024; // 128MB
+    private static final long MIN_PART_SIZE = 5 * 1024 * 1024; // 5MB
+    private static final int MAX_PARTS = 10000;
+    private static final int DEFAULT_MAX_IN_FLIGHT_PARTS = 8;
+
+    private final AmazonS3 s3Client;
+    private final String sourceBucket;
+    private final String sourceKey;
+    private final ObjectMetadata sourceMetadata;
+    private final String targetBucket;
+    private final String targetKey;
+    private final long partSize;
+    private final int maxInFlightParts;
+
+    @Builder
+    public S3MultipartCopier(
+            AmazonS3 s3Client,
+            String sourceBucket,
+            String sourceKey,
+            ObjectMetadata sourceMetadata,
+            String targetBucket,
+            String targetKey,
+            Long partSize,
+            Integer maxInFlightParts) {
+        this.s3Client = s3Client;
+        this.sourceBucket = sourceBucket;
+        this.sourceKey = sourceKey;
+        this.sourceMetadata = sourceMetadata;
+        this.targetBucket = targetBucket;
+        this.targetKey = targetKey;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize == null ? DEFAULT_PART_SIZE : partSize);
+        this.maxInFlightParts = maxInFlightParts == null ? DEFAULT_MAX_IN_FLIGHT_PARTS : maxInFlightParts;
+    }
+
+    /**
+     * @return the ETag of the copy
+     * @throws IOException if a part can not be copied, the multipart upload is aborted
+     */
+    public String copy() throws IOException {
+        ObjectMetadata sourceMetadata = this.sourceMetadata != null ? this.sourceMetadata : s3Client.getObjectMetadata(sourceBucket, sourceKey);
+        long contentLength = sourceMetadata.getContentLength();
+        // S3 accepts at most 10000 parts
+        long actualPartSize = Math.max(partSize, (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+        int parts = (int) Math.max(1, (contentLength + actualPartSize - 1) / actualPartSize);
+
+        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(targetBucket, targetKey)
+                .withObjectMetadata(targetMetadata(sourceMetadata));
+        String uploadId = s3Client.initiateMultipartUpload(initRequest).getUploadId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxInFlightParts, parts), new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-multipart-copy-%d")
+                .build());
+        List<Future<CopyPartResult>> copyPartResults = new ArrayList<>(parts);
+        try {
+            for (int partNo = 1; partNo <= parts; partNo++) {
+                long firstByte = (partNo - 1) * actualPartSize;
+                long lastByte = Math.min(firstByte + actualPartSize, contentLength) - 1;
+                CopyPartRequest request = new CopyPartRequest()
+                        .withSourceBucketName(sourceBucket)
+                        .withSourceKey(sourceKey)
+                        .withDestinationBucketName(targetBucket)
+                        .withDestinationKey(targetKey)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNo)
+                        .withFirstByte(firstByte)
+                        .withLastByte(lastByte)
+                        .withMatchingETagConstraint(sourceMetadata.getETag());
+                copyPartResults.add(executor.submit(() -> copyPart(request)));
+            }
+
+            List<PartETag> partETags = new ArrayList<>(parts);
+            for (Future<CopyPartResult> copyPartResult : copyPartResults) {
+                partETags.add(copyPartResult.get().getPartETag());
+            }
+            return s3Client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(targetBucket, targetKey, uploadId, partETags)).getETag();
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            for (Future<CopyPartResult> copyPartResult : copyPartResults) {
+                copyPartResult.cancel(true);
+            }
+            log.error("Failed to copy parts of {}/{} to {}/{}, aborting upload {}", sourceBucket, sourceKey, targetBucket, targetKey, uploadId, e);
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(targetBucket, targetKey, uploadId));
+            throw new IOException("Failed to copy " + sourceBucket + "/" + sourceKey + " to " + targetBucket + "/" + targetKey,
+                    e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CopyPartResult copyPart(CopyPartRequest request) {
+        log.info("Copying {}/{}, Part No: {}, Bytes: {}-{}",
+                sourceBucket,
+                sourceKey,
+                request.getPartNumber(),
+                request.getFirstByte(),
+                request.getLastByte());
+        CopyPartResult result = s3Client.copyPart(request);
+        // null when the ETag constraint does not match
+        if (result == null)
+            throw new IllegalStateException("Source changed during the copy: " + sourceBucket + "/" + sourceKey);
+        return result;
+    }
+
+    private static ObjectMetadata targetMetadata(ObjectMetadata sourceMetadata) {
+        ObjectMetadata targetMetadata = new ObjectMetadata();
+        targetMetadata.setUserMetadata(sourceMetadata.getUserMetadata());
+        if (sourceMetadata.getContentType() != null)
+            targetMetadata.setContentType(sourceMetadata.getContentType());
+        if (sourceMetadata.getContentEncoding() != null)
+            targetMetadata.setContentEncoding(sourceMetadata.getContentEncoding());
+        if (sourceMetadata.getContentDisposition() != null)
+            targetMetadata.setContentDisposition(sourceMetadata.getContentDisposition());
+        if (sourceMetadata.getContentLanguage() != null)
+            targetMetadata.setContentLanguage(sourceMetadata.getContentLanguage());
+        if (sourceMetadata.getCacheControl() != null)
+            targetMetadata.setCacheControl(sourceMetadata.getCacheControl());
+        if (sourceMetadata.getHttpExpiresDate() != null)
+            targetMetadata.setHttpExpiresDate(sourceMetadata.getHttpExpiresDate());
+        if (sourceMetadata.getSSEAlgorithm() != null)
+            targetMetadata.setSSEAlgorithm(sourceMetadata.getSSEAlgorithm());
+        return targetMetadata;
+    }
+}
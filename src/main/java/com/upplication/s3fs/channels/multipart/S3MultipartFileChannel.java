@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_MAX_IN_FLIGHT_PARTS;
 import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_PART_SIZE;
 import static java.lang.String.format;
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
@@ -30,6 +31,7 @@ import static java.nio.file.StandardOpenOption.READ;
 public class S3MultipartFileChannel extends FileChannel {
 
     private static final long DEFAULT_PART_SIZE = 32 * 1024 * 1024; // 32MB
+    private static final int DEFAULT_MAX_IN_FLIGHT_PARTS = 4;
 
     private final Set<? extends OpenOption> options;
     private final FileChannel backingFileChannel;
@@ -76,6 +78,7 @@ public class S3MultipartFileChannel extends FileChannel {
                         .changingParts(partKeySubject)
                         .uploadChannel(backingFileChannel)
                         .partSize(Long.parseLong(properties.getProperty(MULTIPART_PART_SIZE, String.valueOf(DEFAULT_PART_SIZE))))
+                        .maxInFlightParts(Integer.parseInt(properties.getProperty(MULTIPART_MAX_IN_FLIGHT_PARTS, String.valueOf(DEFAULT_MAX_IN_FLIGHT_PARTS))))
                         .build()
                         .upload(partKeySubject::onComplete);
             }
@@ -225,7 +228,9 @@ public class S3MultipartFileChannel extends FileChannel {
 
     private void completeUpload() {
         MultipartUploadSummary summary = multipartUploadSummary.blockingGet();
-        if (!summary.isPerformed()) {
+        if (summary.isPerformed()) {
+            path.getFileSystem().objectWritten(path.getFileStore().name(), path.getKey());
+        } else {
             try (InputStream in = Channels.newInputStream(FileChannel.open(backingFilePath, Sets.newHashSet(READ)))) {
                 S3Uploader.builder()
                         .path(path)
@@ -2,32 +2,44 @@ package com.upplication.s3fs.channels.multipart;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.upplication.s3fs.S3Path;
 import io.reactivex.Observable;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.Tika;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import static java.nio.channels.Channels.newInputStream;
-import static org.apache.commons.io.IOUtils.read;
 
+/**
+ * Uploads the parts in parallel on a bounded pool. At most maxInFlightParts parts are
+ * being uploaded at the same time, further parts block the writer until one of them finishes.
+ */
 @Slf4j
-public class S3MultipartUploader extends MultipartUploader<UploadPartResult> {
+public class S3MultipartUploader extends MultipartUploader<Future<UploadPartResult>> {
+
+    private static final int DEFAULT_MAX_IN_FLIGHT_PARTS = 4;
 
     private final ObjectMetadata objectMetadata;
     private final AmazonS3 s3Client;
     private final S3Path path;
     private final FileChannel uploadChannel;
+    private final int maxInFlightParts;
+    private final Semaphore inFlightParts;
 
     private String uploadId;
+    private ExecutorService executor;
 
     @Builder
     public S3MultipartUploader(
@@ -36,12 +48,15 @@ public class S3MultipartUploader extends MultipartUploader<UploadPartResult> {
             AmazonS3 s3Client,
             S3Path path,
             FileChannel uploadChannel,
-            Long partSize) {
+            Long partSize,
+            Integer maxInFlightParts) {
         super(changingParts, partSize);
         this.objectMetadata = objectMetadata;
         this.s3Client = s3Client;
         this.path = path;
         this.uploadChannel = uploadChannel;
+        this.maxInFlightParts = maxInFlightParts == null ? DEFAULT_MAX_IN_FLIGHT_PARTS : maxInFlightParts;
+        this.inFlightParts = new Semaphore(this.maxInFlightParts);
     }
 
     @Override
@@ -56,33 +71,60 @@ public class S3MultipartUploader extends MultipartUploader<UploadPartResult> {
         }
         initRequest.setObjectMetadata(objectMetadata);
         uploadId = s3Client.initiateMultipartUpload(initRequest).getUploadId();
+        executor = Executors.newFixedThreadPool(maxInFlightParts, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-multipart-upload-%d")
+                .build());
     }
 
     @Override
-    protected Part<UploadPartResult> uploadNewPart(int partNo, PartKey partKey) {
-        UploadPartResult uploadPartResult = s3Client.uploadPart(uploadPartRequest(partNo, partKey));
-        log.info("Uploading file: {}, Part No: {}, Part Length: {}",
-                path.toString(),
-                partNo,
-                partKey.getLength());
+    protected Part<Future<UploadPartResult>> uploadNewPart(int partNo, PartKey partKey) {
+        // the part body is read from the channel by the pool thread while the request is sent
+        final UploadPartRequest request = uploadPartRequest(partNo, partKey);
+        try {
+            inFlightParts.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to upload part " + partNo, e);
+        }
+        Future<UploadPartResult> uploadPartResult = executor.submit(() -> {
+            try {
+                log.info("Uploading file: {}, Part No: {}, Part Length: {}",
+                        path.toString(),
+                        partNo,
+                        partKey.getLength());
+                return s3Client.uploadPart(request);
+            } finally {
+                inFlightParts.release();
+            }
+        });
         return new Part<>(partKey, partNo, uploadPartResult);
     }
 
     @Override
     protected String endTransfer() {
-        final List<PartETag> partEtags = getManagedParts().values().stream()
-                .map(Part::getValue)
-                .map(UploadPartResult::getPartETag)
-                .collect(Collectors.toList());
-
         final String bucket = path.getFileStore().name();
         final String key = path.getKey();
-        return s3Client.completeMultipartUpload(
-                new CompleteMultipartUploadRequest(
-                        bucket,
-                        key,
-                        uploadId,
-                        partEtags)).getETag();
+        try {
+            final List<PartETag> partEtags = new ArrayList<>();
+            for (Part<Future<UploadPartResult>> part : getManagedParts().values()) {
+                partEtags.add(part.getValue().get().getPartETag());
+            }
+            return s3Client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(
+                            bucket,
+                            key,
+                            uploadId,
+                            partEtags)).getETag();
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            log.error("Failed to upload parts of file: {}, aborting upload {}", path, uploadId, e);
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            throw new IllegalStateException("Failed to upload file: " + path, e);
+        } finally {
+            executor.shutdown();
+        }
     }
 
     private UploadPartRequest uploadPartRequest(int partId, PartKey partKey) {
@@ -99,20 +141,8 @@ public class S3MultipartUploader extends MultipartUploader<UploadPartResult> {
     }
 
     private InputStream asInputStream(FileChannel fileChannel, PartKey partKey) {
-        int partOffset = partKey.startAsInt();
-        int partLength = partKey.lengthAsInt();
-
-        try {
-            // Not being closed intentionally, as it will be closed with the channel
-            InputStream channelStream = newInputStream(fileChannel.position(partKey.getStart()));
-            byte[] buffer = new byte[partOffset + partLength];
-            read(channelStream, buffer, partOffset, partLength);
-
-            return new ByteArrayInputStream(buffer, partOffset, partLength);
-        } catch (IOException e) {
-            log.error("Failed to upload file part", e);
-            throw new RuntimeException(e);
-        }
+        // read lazily with positional reads, the part is never copied to the heap as a whole
+        return new FileChannelRegionInputStream(fileChannel, partKey.getStart(), partKey.getLength());
     }
 
 }
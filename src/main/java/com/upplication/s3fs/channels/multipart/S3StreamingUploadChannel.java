@@ -0,0 +1,263 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.upplication.s3fs.S3Path;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_MAX_IN_FLIGHT_PARTS;
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_PART_SIZE;
+import static java.lang.String.format;
+
+/**
+ * Write only, append only channel that uploads the content while it is written, without any temp file.
+ * <p>
+ * The first bytes are collected in a small heap buffer that grows up to the part size, so a small object
+ * costs about its own size. Once the first part is full the next ones are collected in direct buffers of
+ * the part size taken from the {@link DirectBufferPool} of the provider. Every full buffer is sent as an
+ * UploadPart and reused once uploaded, so the memory is bounded by part size * (max in flight parts + 1).
+ * Objects smaller than one part are sent with a single putObject when the channel is closed.
+ */
+@Slf4j
+public class S3StreamingUploadChannel implements WritableByteChannel {
+
+    private static final int DEFAULT_PART_SIZE = 32 * 1024 * 1024; // 32MB
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024; // 64KB
+    /**
+     * the largest buffer the JVM can allocate
+     */
+    static final int MAX_PART_SIZE = Integer.MAX_VALUE - 8;
+    private static final int DEFAULT_MAX_IN_FLIGHT_PARTS = 4;
+
+    private final S3Path path;
+    private final AmazonS3 client;
+    private final String bucket;
+    private final String key;
+    private final int partSize;
+    private final int maxBuffers;
+    private final DirectBufferPool bufferPool;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final List<Future<PartETag>> parts = new ArrayList<>();
+    private final ObjectMetadata objectMetadata = new ObjectMetadata();
+
+    private int allocatedBuffers;
+    private ByteBuffer current;
+    private String uploadId;
+    private ExecutorService executor;
+    private boolean open = true;
+
+    /**
+     * Open the path for writing, the object is replaced when the channel is closed
+     *
+     * @param path       the path to write
+     * @param options    options specifying how the file is opened
+     * @param properties Properties with the optional part size and max in flight parts
+     * @param bufferPool the pool of the part buffers, shared by the channels of the provider
+     * @throws IOException if the path exists and CREATE_NEW is given or it not exists and can not be created
+     */
+    public S3StreamingUploadChannel(S3Path path, Set<? extends OpenOption> options, Properties properties, DirectBufferPool bufferPool) throws IOException {
+        this.path = path;
+        this.client = path.getFileSystem().getClient();
+        this.bucket = path.getFileStore().name();
+        this.key = path.getKey();
+        this.partSize = partSize(properties);
+        this.bufferPool = bufferPool;
+        int maxInFlightParts = Integer.parseInt(properties.getProperty(MULTIPART_MAX_IN_FLIGHT_PARTS, String.valueOf(DEFAULT_MAX_IN_FLIGHT_PARTS)));
+        // one buffer being filled while the others are uploading
+        this.maxBuffers = maxInFlightParts + 1;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+
+        boolean exists = path.getFileSystem().provider().exists(path);
+        if (exists && options.contains(StandardOpenOption.CREATE_NEW))
+            throw new FileAlreadyExistsException(format("target already exists: %s", path));
+        else if (!exists && !options.contains(StandardOpenOption.CREATE_NEW) &&
+                !options.contains(StandardOpenOption.CREATE))
+            throw new NoSuchFileException(format("target not exists: %s", path));
+    }
+
+    /**
+     * the part size is parsed as a long like the file channels do, but a part is a single buffer here
+     */
+    private static int partSize(Properties properties) {
+        String value = properties.getProperty(MULTIPART_PART_SIZE, String.valueOf(DEFAULT_PART_SIZE));
+        long partSize = Long.parseLong(value);
+        if (partSize <= 0)
+            throw new IllegalArgumentException(format("%s must be positive: %s", MULTIPART_PART_SIZE, value));
+        if (partSize > MAX_PART_SIZE) {
+            log.warn("{} of {} bytes is more than an output stream can buffer, parts of {} bytes are uploaded instead",
+                    MULTIPART_PART_SIZE, partSize, MAX_PART_SIZE);
+            return MAX_PART_SIZE;
+        }
+        return (int) partSize;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+        int written = 0;
+        while (src.hasRemaining()) {
+            if (current == null)
+                current = takeBuffer();
+            else if (!current.hasRemaining())
+                current = grow(current);
+            int length = Math.min(src.remaining(), current.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + length);
+            current.put(slice);
+            src.position(src.position() + length);
+            written += length;
+            if (current.position() == partSize) {
+                uploadPart(current);
+                current = null;
+            }
+        }
+        return written;
+    }
+
+    private ByteBuffer takeBuffer() throws IOException {
+        if (allocatedBuffers == 0) {
+            allocatedBuffers++;
+            return ByteBuffer.allocate(Math.min(INITIAL_BUFFER_SIZE, partSize));
+        }
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null && allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return bufferPool.take(partSize);
+        }
+        try {
+            // all the buffers are being uploaded, wait until one of them is back
+            if (buffer == null)
+                buffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing: " + path);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * the first buffer is doubled until it holds a whole part
+     */
+    private ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer grown = ByteBuffer.allocate((int) Math.min(2L * buffer.capacity(), partSize));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    private void uploadPart(ByteBuffer buffer) {
+        buffer.flip();
+        if (uploadId == null)
+            startUpload(buffer);
+
+        final int partNo = parts.size() + 1;
+        final UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(partNo)
+                .withPartSize(buffer.remaining())
+                .withInputStream(new ByteBufferInputStream(buffer));
+        parts.add(executor.submit(() -> {
+            try {
+                log.info("Uploading file: {}, Part No: {}, Part Length: {}", path, partNo, request.getPartSize());
+                return client.uploadPart(request).getPartETag();
+            } finally {
+                freeBuffers.offer(buffer);
+            }
+        }));
+    }
+
+    private void startUpload(ByteBuffer firstPart) {
+        objectMetadata.setContentType(detectContentType(firstPart));
+        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(bucket, key);
+        initRequest.setObjectMetadata(objectMetadata);
+        uploadId = client.initiateMultipartUpload(initRequest).getUploadId();
+        executor = Executors.newFixedThreadPool(maxBuffers - 1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("s3fs-streaming-upload-%d")
+                .build());
+    }
+
+    private String detectContentType(ByteBuffer content) {
+        try {
+            return new Tika().detect(new ByteBufferInputStream(content), path.getFileName().toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not determine content type", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!open)
+            return;
+        open = false;
+        try {
+            if (uploadId == null)
+                putObject();
+            else
+                completeUpload();
+            path.getFileSystem().objectWritten(bucket, key);
+        } finally {
+            if (executor != null)
+                executor.shutdown();
+            for (ByteBuffer buffer = freeBuffers.poll(); buffer != null; buffer = freeBuffers.poll()) {
+                bufferPool.give(buffer);
+            }
+            current = null;
+        }
+    }
+
+    private void putObject() {
+        ByteBuffer content = current == null ? ByteBuffer.allocate(0) : current;
+        content.flip();
+        objectMetadata.setContentLength(content.remaining());
+        objectMetadata.setContentType(detectContentType(content));
+        client.putObject(bucket, key, new ByteBufferInputStream(content), objectMetadata);
+    }
+
+    private void completeUpload() throws IOException {
+        if (current != null && current.position() > 0)
+            uploadPart(current);
+        try {
+            List<PartETag> partETags = new ArrayList<>();
+            for (Future<PartETag> part : parts) {
+                partETags.add(part.get());
+            }
+            client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            log.error("Failed to upload parts of file: {}, aborting upload {}", path, uploadId, e);
+            for (Future<PartETag> part : parts) {
+                part.cancel(true);
+            }
+            client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            throw new IOException(format("Failed to upload file: %s", path), e);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.upplication.s3fs.util;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
 import com.google.common.collect.Sets;
-import com.upplication.s3fs.S3ObjectSummaryCache;
 import com.upplication.s3fs.S3Path;
 import com.upplication.s3fs.attribute.S3BasicFileAttributes;
 import com.upplication.s3fs.attribute.S3PosixFileAttributes;
@@ -15,8 +14,10 @@ import java.io.FileNotFoundException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static com.amazonaws.util.CollectionUtils.isNullOrEmpty;
 import static java.util.Objects.isNull;
@@ -38,7 +39,7 @@ public class S3Utils {
         String key = s3Path.getKey();
         String bucketName = s3Path.getFileStore().name();
         try {
-            return S3ObjectSummaryCache.INSTANCE.getOrCacheDirectory(key)
+            return s3Path.getFileSystem().getObjectSummaryCache().getOrCacheDirectory(bucketName, key)
                     .orElseGet(() -> getFileSummary(s3Path, bucketName, key)
 
                             // if not found (404 err) with the original key, try to find the element as a directory.
@@ -49,20 +50,36 @@ public class S3Utils {
         }
     }
 
+    /**
+     * Get the {@link S3ObjectSummary} of the object with the key of this Path, without looking for a directory.
+     * A cached summary is used when there is one, otherwise a single HEAD request is made.
+     *
+     * @param s3Path {@link S3Path}
+     * @return the summary or empty if there is no object with this key
+     */
+    public Optional<S3ObjectSummary> getFileSummary(S3Path s3Path) {
+        String key = s3Path.getKey();
+        String bucketName = s3Path.getFileStore().name();
+        S3ObjectSummary cached = s3Path.getFileSystem().getObjectSummaryCache().get(bucketName, key);
+        // directories are cached with the summary of their first child
+        if (cached != null && key.equals(cached.getKey()))
+            return Optional.of(cached);
+        return getFileSummary(s3Path, bucketName, key);
+    }
+
+    /**
+     * concurrent lookups of the same key share a single HEAD request
+     */
     private Optional<S3ObjectSummary> getFileSummary(S3Path s3Path, String bucketName, String filePath) {
+        return s3Path.getFileSystem().getObjectSummaryCache()
+                .lookupFile(bucketName, filePath, () -> headFileSummary(s3Path, bucketName, filePath));
+    }
+
+    private Optional<S3ObjectSummary> headFileSummary(S3Path s3Path, String bucketName, String filePath) {
         try {
             AmazonS3 client = s3Path.getFileSystem().getClient();
             ObjectMetadata metadata = client.getObjectMetadata(bucketName, filePath);
-
-            S3ObjectSummary summary = new S3ObjectSummary();
-            summary.setBucketName(bucketName);
-            summary.setETag(metadata.getETag());
-            summary.setKey(filePath);
-            summary.setLastModified(metadata.getLastModified());
-            summary.setSize(metadata.getContentLength());
-            summary.setOwner(client.getObjectAcl(bucketName, filePath).getOwner());
-
-            return Optional.of(S3ObjectSummaryCache.INSTANCE.put(filePath, summary));
+            return Optional.of(cacheSummary(s3Path, bucketName, filePath, metadata));
         } catch (AmazonS3Exception e) {
             if (e.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
                 throw e;
@@ -71,7 +88,50 @@ public class S3Utils {
         return Optional.empty();
     }
 
+    /**
+     * Get the metadata of the object with the key of this Path with a single HEAD request, for the callers
+     * that need more than its {@link S3ObjectSummary}. The summary is cached like {@link #getFileSummary(S3Path)}.
+     *
+     * @param s3Path {@link S3Path}
+     * @return the metadata of the object
+     * @throws NoSuchFileException if there is no object with this key
+     */
+    public ObjectMetadata getObjectMetadata(S3Path s3Path) throws NoSuchFileException {
+        String key = s3Path.getKey();
+        String bucketName = s3Path.getFileStore().name();
+        try {
+            ObjectMetadata metadata = s3Path.getFileSystem().getClient().getObjectMetadata(bucketName, key);
+            cacheSummary(s3Path, bucketName, key, metadata);
+            return metadata;
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                throw e;
+            }
+            throw new NoSuchFileException(bucketName + S3Path.PATH_SEPARATOR + key);
+        }
+    }
+
+    private S3ObjectSummary cacheSummary(S3Path s3Path, String bucketName, String filePath, ObjectMetadata metadata) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucketName);
+        summary.setETag(metadata.getETag());
+        summary.setKey(filePath);
+        summary.setLastModified(metadata.getLastModified());
+        summary.setSize(metadata.getContentLength());
+        // the owner is not set: it needs a getObjectAcl per object, see getS3PosixFileAttributes
+
+        return s3Path.getFileSystem().getObjectSummaryCache().put(bucketName, filePath, summary);
+    }
+
+    /**
+     * concurrent lookups of the same directory share a single listing request
+     */
     private Optional<S3ObjectSummary> getFolderSummaryFromFirstChildFile(S3Path s3Path, String bucketName, String folderPath) {
+        return s3Path.getFileSystem().getObjectSummaryCache()
+                .lookupDirectory(bucketName, folderPath, () -> listFolderSummary(s3Path, bucketName, folderPath));
+    }
+
+    private Optional<S3ObjectSummary> listFolderSummary(S3Path s3Path, String bucketName, String folderPath) {
         try {
             AmazonS3 client = s3Path.getFileSystem().getClient();
             // is a virtual directory
@@ -86,7 +146,7 @@ public class S3Utils {
 
             return isNullOrEmpty(current.getObjectSummaries())
                     ? Optional.empty()
-                    : Optional.of(S3ObjectSummaryCache.INSTANCE.put(folderPath, current.getObjectSummaries().get(0)));
+                    : Optional.of(s3Path.getFileSystem().getObjectSummaryCache().put(bucketName, folderPath, current.getObjectSummaries().get(0)));
         } catch (Exception e) {
             log.warn("Error occurred while getting the folder summary", e);
             return Optional.empty();
@@ -114,18 +174,18 @@ public class S3Utils {
         S3ObjectSummary objectSummary = getS3ObjectSummary(s3Path);
 
         String key = s3Path.getKey();
-        String bucketName = s3Path.getFileStore().name();
 
         S3BasicFileAttributes attrs = toS3FileAttributes(objectSummary, key);
-        S3UserPrincipal userPrincipal = null;
+        Supplier<UserPrincipal> userPrincipal = () -> null;
         Set<PosixFilePermission> permissions = null;
 
         if (!attrs.isDirectory()) {
-            AmazonS3 client = s3Path.getFileSystem().getClient();
-//            AccessControlList acl = client.getObjectAcl(bucketName, key);
-            Owner owner = new Owner("asdf", "asdf");//acl.getOwner();
-
-            userPrincipal = new S3UserPrincipal(owner.getId() + ":" + owner.getDisplayName());
+            // listings return the owner of the object, otherwise the owner of the bucket (cached by the file system) is used
+            Owner listedOwner = objectSummary.getOwner();
+            userPrincipal = () -> {
+                Owner owner = nonNull(listedOwner) ? listedOwner : s3Path.getFileStore().getOwner();
+                return new S3UserPrincipal(owner.getId() + ":" + owner.getDisplayName());
+            };
             permissions = new HashSet<>(Arrays.asList(PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ));
         } else {
             permissions = toPosixFilePermission(Permission.FullControl);
@@ -0,0 +1,72 @@
+package com.upplication.s3fs.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesce concurrent calls with the same key: the first caller runs the call and the callers
+ * that arrive while it runs wait for its result instead of running it again.
+ * <p>
+ * Nothing is remembered once the call returns, caching the result is up to the call.
+ * The callers that wait can be interrupted, the call itself keeps running for the others.
+ *
+ * @param <V> the type of the result
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param <E> the exception thrown by the call
+     */
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+
+        V call() throws E;
+    }
+
+    /**
+     * @param key  the key of the call
+     * @param call the call, run by this thread unless a call with the same key is running
+     * @return the result of the call, the same for every caller that waited for it
+     * @throws E                    the exception thrown by the call
+     * @throws InterruptedException if interrupted while waiting for the call of another thread
+     */
+    public <E extends Exception> V run(String key, Call<V, E> call) throws E, InterruptedException {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = calls.putIfAbsent(key, mine);
+        if (running != null)
+            return await(running);
+        try {
+            V result = call.call();
+            mine.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return the number of calls running
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> V await(CompletableFuture<V> running) throws E, InterruptedException {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            // the call only throws E or unchecked exceptions
+            throw (E) e.getCause();
+        }
+    }
+}
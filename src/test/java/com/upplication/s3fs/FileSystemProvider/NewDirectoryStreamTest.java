@@ -1,7 +1,10 @@
 package com.upplication.s3fs.FileSystemProvider;
 
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.upplication.s3fs.S3DirectoryStream;
 import com.upplication.s3fs.S3FileSystem;
 import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
 import com.upplication.s3fs.S3UnitTestBase;
 import com.upplication.s3fs.util.AmazonS3ClientMock;
 import com.upplication.s3fs.util.AmazonS3MockFactory;
@@ -9,13 +12,17 @@ import com.upplication.s3fs.util.MockBucket;
 import com.upplication.s3fs.util.S3EndpointConstant;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 public class NewDirectoryStreamTest extends S3UnitTestBase {
@@ -138,6 +145,163 @@ public class NewDirectoryStreamTest extends S3UnitTestBase {
         assertEquals(count1050, count);
     }
 
+    @Test
+    public void resumeWithPageSizeAndStartAfter() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1", "dir/file2", "dir/file3", "dir/file4", "dir/file5");
+        Path dir = createNewS3FileSystem().getPath("/bucketA", "dir");
+        reset(client);
+
+        // act
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            ((S3DirectoryStream) stream).pageSize(2).startAfter("dir/file2");
+            for (Path path : stream) {
+                names.add(path.getFileName().toString());
+            }
+        }
+
+        // assert
+        assertEquals(Arrays.asList("file3", "file4", "file5"), names);
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void resumeAfterADirectory() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/sub").file("dir/a", "dir/sub-x", "dir/sub/file1", "dir/z");
+        Path dir = createNewS3FileSystem().getPath("/bucketA", "dir");
+
+        // act
+        List<String> names = new ArrayList<>();
+        String checkpoint = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            ((S3DirectoryStream) stream).pageSize(2);
+            for (Path path : stream) {
+                names.add(path.getFileName().toString());
+                checkpoint = S3DirectoryStream.continuationKey(path);
+                if (path.getFileName().toString().equals("sub"))
+                    break;
+            }
+        }
+        List<String> resumed = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            ((S3DirectoryStream) stream).pageSize(2).startAfter(checkpoint);
+            for (Path path : stream) {
+                resumed.add(path.getFileName().toString());
+            }
+        }
+
+        // assert
+        assertEquals(Arrays.asList("a", "sub-x", "sub"), names);
+        assertEquals("dir/sub/", checkpoint);
+        assertEquals(Arrays.asList("z"), resumed);
+    }
+
+    @Test
+    public void filterIsApplied() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1.gz", "dir/file2.txt", "dir/file3.gz");
+        Path dir = createNewS3FileSystem().getPath("/bucketA", "dir");
+
+        // act
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.gz")) {
+            for (Path path : stream) {
+                names.add(path.getFileName().toString());
+            }
+        }
+
+        // assert
+        assertEquals(Arrays.asList("file1.gz", "file3.gz"), names);
+    }
+
+    @Test
+    public void globMatcherOnlyListsItsLiteralPrefix() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/part-sub").file("dir/part-1.gz", "dir/part-2.txt", "dir/other.gz", "dir/part-sub/file");
+        S3FileSystem fileSystem = createNewS3FileSystem();
+        Path dir = fileSystem.getPath("/bucketA", "dir");
+        reset(client);
+
+        // act
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, fileSystem.getPathMatcher("glob:part-*"))) {
+            for (Path path : stream) {
+                names.add(path.getFileName().toString());
+            }
+        }
+
+        // assert
+        assertEquals(Arrays.asList("part-1.gz", "part-2.txt", "part-sub"), names);
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client).listObjectsV2(request.capture());
+        assertEquals("dir/part-", request.getValue().getPrefix());
+        assertEquals("/", request.getValue().getDelimiter());
+    }
+
+    @Test
+    public void globMatcherWithSeveralNamesOnlyReturnsDirectChildren() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/logs", "dir/logs/2026-10-01").file("dir/logs/2026-10-01/part-1.gz", "dir/other.gz");
+        S3FileSystem fileSystem = createNewS3FileSystem();
+        Path dir = fileSystem.getPath("/bucketA", "dir");
+
+        // act
+        List<String> keys = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, fileSystem.getPathMatcher("glob:logs/2026-10-*/part-*.gz"))) {
+            for (Path path : stream) {
+                keys.add(((S3Path) path).getKey());
+            }
+        }
+
+        // assert: the file names of the children never match a glob of several names
+        assertEquals(Collections.emptyList(), keys);
+    }
+
+    @Test
+    public void globListsTheMatchingKeysAtAnyDepth() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/logs", "dir/logs/2026-10-01", "dir/logs/2026-10-02", "dir/logs/2026-11-01")
+                .file("dir/logs/2026-10-01/part-1.gz", "dir/logs/2026-10-01/part-2.txt", "dir/logs/2026-10-02/part-3.gz",
+                        "dir/logs/2026-11-01/part-4.gz", "dir/other.gz");
+        S3FileSystem fileSystem = createNewS3FileSystem();
+        Path dir = fileSystem.getPath("/bucketA", "dir");
+        reset(client);
+
+        // act
+        List<String> keys;
+        try (Stream<Path> paths = s3fsProvider.glob(dir, fileSystem.getPathMatcher("glob:logs/2026-10-*/part-*.gz"))) {
+            keys = paths.map(path -> ((S3Path) path).getKey()).collect(Collectors.toList());
+        }
+
+        // assert
+        assertEquals(Arrays.asList("dir/logs/2026-10-01/part-1.gz", "dir/logs/2026-10-02/part-3.gz"), keys);
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client).listObjectsV2(request.capture());
+        assertEquals("dir/logs/2026-10-", request.getValue().getPrefix());
+        assertNull(request.getValue().getDelimiter());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iteratorOfAClosedStream() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1");
+        Path dir = createNewS3FileSystem().getPath("/bucketA", "dir");
+
+        // act
+        DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        stream.close();
+        stream.iterator();
+    }
+
     /**
      * check if the directory path contains all the files name
      * @param base Path
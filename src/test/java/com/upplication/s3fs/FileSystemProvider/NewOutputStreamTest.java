@@ -18,6 +18,7 @@ import java.nio.file.*;
 import static com.upplication.s3fs.AmazonS3Factory.ACCESS_KEY;
 import static com.upplication.s3fs.AmazonS3Factory.SECRET_KEY;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 public class NewOutputStreamTest extends S3UnitTestBase {
 
@@ -69,6 +70,22 @@ public class NewOutputStreamTest extends S3UnitTestBase {
         assertArrayEquals(res.getBytes(), buffer);
     }
 
+    @Test
+    public void sizeAfterTheStreamIsClosed() throws IOException {
+        // fixtures
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").file("file1", "initial content".getBytes());
+        S3FileSystem fileSystem = createNewS3FileSystem();
+        // the summary of the initial content is cached
+        assertEquals("initial content".length(), Files.size(fileSystem.getPath("/bucketA/file1")));
+
+        try (OutputStream stream = s3fsProvider.newOutputStream(fileSystem.getPath("/bucketA/file1"), StandardOpenOption.TRUNCATE_EXISTING)) {
+            stream.write("new".getBytes());
+        }
+
+        assertEquals("new".length(), Files.size(fileSystem.getPath("/bucketA/file1")));
+    }
+
     @Test(expected = FileAlreadyExistsException.class)
     public void outputStreamWithCreateNewAndFileExists() throws IOException {
         Path base = getS3Directory();
@@ -112,6 +129,18 @@ public class NewOutputStreamTest extends S3UnitTestBase {
         assertArrayEquals("sample content".getBytes(), buffer);
     }
 
+    @Test
+    public void outputStreamWithoutTruncateKeepsTheRestOfTheFile() throws IOException {
+        Path base = getS3Directory();
+        Path file = Files.write(base.resolve("file1"), "0123456789".getBytes());
+
+        try (OutputStream stream = s3fsProvider.newOutputStream(file, StandardOpenOption.WRITE)) {
+            stream.write("abc".getBytes());
+        }
+
+        assertArrayEquals("abc3456789".getBytes(), Files.readAllBytes(base.resolve("file1")));
+    }
+
     @Test
     public void anotherOutputStream() throws IOException {
         Path base = getS3Directory();
@@ -0,0 +1,121 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3BatchDeleterTest {
+
+    private final AmazonS3 client = mock(AmazonS3.class);
+
+    @Test
+    public void keysAreDeletedInRequestsOfAThousandKeys() throws IOException {
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        long deleted = new S3BatchDeleter(client, 2).delete("bucket", keys(0, 2500), failures);
+
+        assertEquals(2500, deleted);
+        assertTrue(failures.isEmpty());
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client, times(3)).deleteObjects(requests.capture());
+        Set<String> keys = new HashSet<>();
+        for (DeleteObjectsRequest request : requests.getAllValues()) {
+            assertEquals("bucket", request.getBucketName());
+            assertTrue(request.getKeys().size() <= 1000);
+            for (DeleteObjectsRequest.KeyVersion key : request.getKeys()) {
+                keys.add(key.getKey());
+            }
+        }
+        assertEquals(2500, keys.size());
+    }
+
+    @Test
+    public void keysThatCanNotBeDeletedAreReported() throws IOException {
+        MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+        error.setKey("file1");
+        error.setCode("AccessDenied");
+        error.setMessage("Access Denied");
+        when(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenThrow(new MultiObjectDeleteException(Collections.singletonList(error), Collections.<DeleteObjectsResult.DeletedObject>emptyList()));
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        long deleted = new S3BatchDeleter(client, 2).delete("bucket", keys(0, 10), failures);
+
+        assertEquals(9, deleted);
+        assertEquals(Collections.singleton("file1"), failures.keySet());
+    }
+
+    @Test
+    public void treeIsDeletedPageByPage() throws IOException {
+        ObjectListing first = listing(0, 1000);
+        first.setTruncated(true);
+        ObjectListing second = listing(1000, 1200);
+        when(client.listObjects(any(ListObjectsRequest.class))).thenReturn(first);
+        when(client.listNextBatchOfObjects(first)).thenReturn(second);
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        long deleted = new S3BatchDeleter(client, 2).deleteTree("bucket", "dir", failures);
+
+        // the 1200 keys under dir/ and the file dir
+        assertEquals(1201, deleted);
+        ArgumentCaptor<ListObjectsRequest> listRequest = ArgumentCaptor.forClass(ListObjectsRequest.class);
+        verify(client).listObjects(listRequest.capture());
+        assertEquals("dir/", listRequest.getValue().getPrefix());
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client, times(3)).deleteObjects(requests.capture());
+        for (DeleteObjectsRequest request : requests.getAllValues()) {
+            assertTrue(request.getKeys().size() <= 1000);
+        }
+    }
+
+    @Test
+    public void failedListingIsReportedAndListedPagesAreDeleted() throws IOException {
+        ObjectListing first = listing(0, 1000);
+        first.setTruncated(true);
+        AmazonS3Exception error = new AmazonS3Exception("Internal Error");
+        when(client.listObjects(any(ListObjectsRequest.class))).thenReturn(first);
+        when(client.listNextBatchOfObjects(first)).thenThrow(error);
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        long deleted = new S3BatchDeleter(client, 2).deleteTree("bucket", "dir", failures);
+
+        // the file dir and the first page
+        assertEquals(1001, deleted);
+        assertEquals(Collections.singletonMap("dir/", error), failures);
+        verify(client, times(2)).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    private static List<String> keys(int from, int to) {
+        List<String> keys = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            keys.add("file" + i);
+        }
+        return keys;
+    }
+
+    private static ObjectListing listing(int from, int to) {
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName("bucket");
+        for (String key : keys(from, to)) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName("bucket");
+            summary.setKey("dir/" + key);
+            listing.getObjectSummaries().add(summary);
+        }
+        return listing;
+    }
+}
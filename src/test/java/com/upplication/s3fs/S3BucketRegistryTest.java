@@ -0,0 +1,68 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class S3BucketRegistryTest extends S3UnitTestBase {
+
+    private AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+
+    @Before
+    public void setup() throws IOException {
+        reset(client);
+        client.bucket("bucketA").file("file1");
+        client.bucket("bucketB").file("file1");
+    }
+
+    @Test
+    public void oneListBucketsForAllTheBucketsOfTheAccount() {
+        S3BucketRegistry registry = new S3BucketRegistry(client, 60000);
+
+        Bucket bucketA = registry.getBucket("bucketA");
+        assertEquals("bucketA", bucketA.getName());
+        assertEquals("bucketB", registry.getBucket("bucketB").getName());
+        assertSame(bucketA, registry.getBucket("bucketA"));
+
+        verify(client, times(1)).listBuckets();
+    }
+
+    @Test
+    public void expiredBucketIsLoadedAgain() {
+        S3BucketRegistry registry = new S3BucketRegistry(client, 0);
+
+        registry.getBucket("bucketA");
+        registry.getBucket("bucketA");
+
+        verify(client, times(2)).listBuckets();
+    }
+
+    @Test
+    public void invalidatedBucketIsLoadedAgain() {
+        S3BucketRegistry registry = new S3BucketRegistry(client, 60000);
+
+        registry.getBucket("bucketA");
+        registry.invalidate("bucketA");
+        registry.getBucket("bucketA");
+
+        verify(client, times(2)).listBuckets();
+    }
+
+    @Test
+    public void fileStoresOfAFileSystemShareTheBuckets() throws IOException {
+        S3FileSystem fileSystem = new S3FileSystem(null, null, client, "endpoint");
+
+        new S3FileStore(fileSystem, "bucketA").getBucket();
+        new S3FileStore(fileSystem, "bucketA").getOwner();
+
+        verify(client, times(1)).listBuckets();
+    }
+}
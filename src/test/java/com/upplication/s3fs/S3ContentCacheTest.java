@@ -0,0 +1,184 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3ContentCacheTest {
+
+    private final AmazonS3 client = mock(AmazonS3.class);
+    private final S3FileSystemProvider provider = new S3FileSystemProvider();
+    private S3FileSystem fileSystem;
+    private Path directory;
+    private S3ContentCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        fileSystem = new S3FileSystem(provider, "key", client, "endpoint");
+        directory = Files.createTempDirectory("s3fs-content-cache-test");
+        stubObject("file1", "content1", "etag1");
+        stubObject("file2", "content2", "etag2");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        if (cache != null)
+            cache.clear();
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void secondReadIsServedLocally() throws IOException {
+        cache = new S3ContentCache(directory, 1024);
+
+        assertEquals("content1", read(cache.newByteChannel(fileSystem.getPath("/bucket/file1"))));
+        assertEquals("content1", read(cache.newByteChannel(fileSystem.getPath("/bucket/file1"))));
+
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    public void copyIsRevalidatedWithItsETag() throws IOException {
+        cache = new S3ContentCache(directory, 1024);
+        read(cache.newByteChannel(fileSystem.getPath("/bucket/file1")));
+        // written through the file system or expired
+        fileSystem.getObjectSummaryCache().remove("bucket", "file1");
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(null);
+
+        assertEquals("content1", read(cache.newByteChannel(fileSystem.getPath("/bucket/file1"))));
+
+        ArgumentCaptor<GetObjectRequest> requests = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client, times(2)).getObject(requests.capture());
+        assertTrue(requests.getAllValues().get(0).getNonmatchingETagConstraints().isEmpty());
+        assertEquals(Collections.singletonList("etag1"), requests.getAllValues().get(1).getNonmatchingETagConstraints());
+        assertEquals("etag1", fileSystem.getObjectSummaryCache().get("bucket", "file1").getETag());
+    }
+
+    @Test
+    public void leastRecentlyReadCopyIsEvicted() throws IOException {
+        cache = new S3ContentCache(directory, 10);
+
+        read(cache.newByteChannel(fileSystem.getPath("/bucket/file1")));
+        read(cache.newByteChannel(fileSystem.getPath("/bucket/file2")));
+        read(cache.newByteChannel(fileSystem.getPath("/bucket/file2")));
+
+        assertEquals(8, cache.size());
+        // file2 was kept, file1 is downloaded again
+        read(cache.newByteChannel(fileSystem.getPath("/bucket/file1")));
+        verify(client, times(3)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void objectsBiggerThanTheCacheAreNotCached() throws IOException {
+        cache = new S3ContentCache(directory, 4);
+
+        assertNull(cache.newByteChannel(fileSystem.getPath("/bucket/file1")));
+        // the size is known from now on
+        assertNull(cache.newByteChannel(fileSystem.getPath("/bucket/file1")));
+
+        // the size is learnt with a HEAD, the object is never downloaded to be discarded
+        verify(client, times(1)).getObjectMetadata("bucket", "file1");
+        verify(client, never()).getObject(any(GetObjectRequest.class));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void concurrentReadsShareOneDownload() throws Exception {
+        final CountDownLatch downloading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            downloading.countDown();
+            release.await();
+            return object("content1", "etag1");
+        });
+        cache = new S3ContentCache(directory, 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(executor.submit(() -> read(cache.newByteChannel(fileSystem.getPath("/bucket/file1")))));
+            }
+            assertTrue(downloading.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            for (Future<String> read : reads) {
+                assertEquals("content1", read.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void writeThenReadServesTheNewContent() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(AmazonS3Factory.CONTENT_CACHE_DIRECTORY, directory.toString());
+        S3FileSystem cachingFileSystem = new S3FileSystem(provider, "key", client, "endpoint", properties);
+        cache = cachingFileSystem.getContentCache();
+        S3Path file = cachingFileSystem.getPath("/bucket/file1");
+        assertEquals("content1", read(cache.newByteChannel(file)));
+
+        stubObject("file1", "new content", "etag3");
+        Files.write(file, "new content".getBytes());
+
+        assertEquals("new content", read(cache.newByteChannel(file)));
+        verify(client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    private void stubObject(final String key, final String content, final String eTag) {
+        when(client.getObject(argThat(new ArgumentMatcher<GetObjectRequest>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument instanceof GetObjectRequest && key.equals(((GetObjectRequest) argument).getKey());
+            }
+        }))).thenAnswer(invocation -> object(content, eTag));
+        when(client.getObjectMetadata("bucket", key)).thenAnswer(invocation -> object(content, eTag).getObjectMetadata());
+    }
+
+    private static S3Object object(String content, String eTag) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length());
+        metadata.setHeader(Headers.ETAG, eTag);
+        S3Object object = new S3Object();
+        object.setObjectMetadata(metadata);
+        object.setObjectContent(new ByteArrayInputStream(content.getBytes()));
+        return object;
+    }
+
+    private static String read(SeekableByteChannel channel) throws IOException {
+        try (SeekableByteChannel c = channel) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) c.size());
+            while (buffer.hasRemaining() && c.read(buffer) != -1) {
+                // read everything
+            }
+            return new String(buffer.array());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class S3DirectoryTransferTest {
+
+    private final AmazonS3 client = mock(AmazonS3.class);
+    private final S3FileSystemProvider provider = new S3FileSystemProvider();
+    private S3FileSystem fileSystem;
+
+    @Before
+    public void setup() {
+        fileSystem = new S3FileSystem(provider, "key", client, "endpoint");
+        // 1500 objects in two pages
+        ObjectListing first = listing(0, 1000);
+        first.setTruncated(true);
+        ObjectListing second = listing(1000, 1500);
+        when(client.listObjects(any(ListObjectsRequest.class))).thenReturn(first);
+        when(client.listNextBatchOfObjects(first)).thenReturn(second);
+    }
+
+    @Test
+    public void copiesEveryObjectUnderTheTarget() throws IOException {
+        S3DirectoryTransfer transfer = new S3DirectoryTransfer(provider, fileSystem.getPath("/bucketA/dir"), fileSystem.getPath("/bucketB/dir2"), false, 4, 2).start();
+
+        transfer.waitForCompletion();
+
+        assertTrue(transfer.isDone());
+        assertEquals(1500, transfer.getObjectsListed());
+        assertEquals(1500, transfer.getObjectsCopied());
+        assertEquals(0, transfer.getObjectsDeleted());
+        verify(client).copyObject("bucketA", "dir/sub/file0", "bucketB", "dir2/sub/file0");
+        verify(client).copyObject("bucketA", "dir/sub/file1499", "bucketB", "dir2/sub/file1499");
+        verify(client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    public void moveDeletesTheSourcesInBatches() throws IOException {
+        S3DirectoryTransfer transfer = new S3DirectoryTransfer(provider, fileSystem.getPath("/bucketA/dir"), fileSystem.getPath("/bucketA/dir2"), true, 4, 2).start();
+
+        transfer.waitForCompletion();
+
+        assertEquals(1500, transfer.getObjectsDeleted());
+        ArgumentCaptor<DeleteObjectsRequest> deletes = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client, times(2)).deleteObjects(deletes.capture());
+        List<DeleteObjectsRequest> requests = deletes.getAllValues();
+        assertEquals(1500, requests.get(0).getKeys().size() + requests.get(1).getKeys().size());
+        assertTrue(requests.get(0).getKeys().size() <= 1000);
+    }
+
+    @Test
+    public void failedCopiesAreReportedAndTheSourcesKept() {
+        when(client.copyObject(eq("bucketA"), eq("dir/sub/file7"), anyString(), anyString())).thenThrow(new AmazonS3Exception("failed"));
+        S3DirectoryTransfer transfer = new S3DirectoryTransfer(provider, fileSystem.getPath("/bucketA/dir"), fileSystem.getPath("/bucketA/dir2"), true, 4, 2).start();
+
+        try {
+            transfer.waitForCompletion();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertEquals(1499, transfer.getObjectsCopied());
+        assertTrue(transfer.getFailures().containsKey("dir/sub/file7"));
+        verify(client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    private static ObjectListing listing(int from, int to) {
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName("bucketA");
+        for (int i = from; i < to; i++) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName("bucketA");
+            summary.setKey("dir/sub/file" + i);
+            summary.setSize(10);
+            listing.getObjectSummaries().add(summary);
+        }
+        return listing;
+    }
+}
@@ -5,6 +5,8 @@ import static com.upplication.s3fs.AmazonS3Factory.SECRET_KEY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -118,11 +120,25 @@ public class S3FileSystemTest extends S3UnitTestBase {
         assertEquals("/", S3Path.PATH_SEPARATOR);
     }
 
-    @Test(expected = UnsupportedOperationException.class)
-    public void getPathMatcherThrowException() {
+    @Test(expected = IllegalArgumentException.class)
+    public void getPathMatcherWithoutSyntaxThrowException() {
         fs.getPathMatcher("");
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void getPathMatcherWithUnknownSyntaxThrowException() {
+        fs.getPathMatcher("unknown:*");
+    }
+
+    @Test
+    public void getPathMatcherGlobAndRegex() {
+        assertTrue(fs.getPathMatcher("glob:/bucketA/dir/*.gz").matches(fs.getPath("/bucketA/dir/file.gz")));
+        assertFalse(fs.getPathMatcher("glob:/bucketA/dir/*.gz").matches(fs.getPath("/bucketA/dir/sub/file.gz")));
+        assertTrue(fs.getPathMatcher("glob:/bucketA/**.gz").matches(fs.getPath("/bucketA/dir/sub/file.gz")));
+        assertTrue(fs.getPathMatcher("regex:dir/file[0-9]+").matches(fs.getPath("dir/file42")));
+        assertFalse(fs.getPathMatcher("regex:dir/file[0-9]+").matches(fs.getPath("dir/file")));
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void getUserPrincipalLookupServiceThrowException() {
         fs.getUserPrincipalLookupService();
@@ -148,6 +164,17 @@ public class S3FileSystemTest extends S3UnitTestBase {
         assertNotNull(iterator.next());
     }
 
+    @Test
+    public void pathsOfABucketShareTheFileStore() {
+        S3Path file = (S3Path) fs.getPath("/bucketA/dir/file");
+        S3Path other = (S3Path) fs.getPath("/bucketA/other");
+
+        assertSame(file.getFileStore(), other.getFileStore());
+        assertSame(file.getFileStore(), ((S3Path) file.getParent()).getFileStore());
+        assertSame(file.getFileStore(), ((S3FileSystem) fs).getFileStore("bucketA"));
+        assertNotSame(file.getFileStore(), ((S3Path) fs.getPath("/bucketB/file")).getFileStore());
+    }
+
     @Test
     public void getRootDirectories() {
         Iterable<Path> paths = fs.getRootDirectories();
@@ -11,6 +11,7 @@ import static org.mockito.Mockito.*;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,7 +23,7 @@ import java.util.Properties;
 import org.junit.Before;
 import org.junit.Test;
 
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
 import com.upplication.s3fs.util.AmazonS3ClientMock;
 import com.upplication.s3fs.util.AmazonS3MockFactory;
 import com.upplication.s3fs.util.MockBucket;
@@ -54,6 +55,27 @@ public class S3IteratorTest extends S3UnitTestBase {
         assertIterator(iterator, "file1");
     }
 
+    @Test
+    public void subDirectoriesAreListedWithTheirAttributes() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/sub1", "dir/sub2").file("dir/sub1/file1", "dir/sub2/file2");
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+
+        S3Iterator iterator = new S3Iterator(path);
+        assertTrue(iterator.hasNext());
+        Path sub1 = iterator.next();
+        Path sub2 = iterator.next();
+
+        assertTrue(Files.isDirectory(sub1));
+        assertTrue(Files.isDirectory(sub2));
+        // the attributes are consumed, the next lookups are served by the summary cache
+        assertTrue(Files.isDirectory(sub1));
+        assertTrue(Files.isDirectory(s3FileSystem.getPath("/bucketA", "dir", "sub2")));
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+        verify(client, never()).getObjectMetadata(anyString(), anyString());
+    }
+
     @Test
     public void iteratorAnotherDirectory() throws IOException {
         AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
@@ -212,7 +234,78 @@ public class S3IteratorTest extends S3UnitTestBase {
         S3Path path = s3FileSystem.getPath("/bucketD");
         S3Iterator iterator = new S3Iterator(path);
         assertIterator(iterator, filesNameExpected);
-        verify(client, times(1)).listNextBatchOfObjects(any(ObjectListing.class));
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void nextPageIsListedBeforeItIsNeeded() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1", "dir/file2", "dir/file3");
+
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+        S3Iterator iterator = new S3Iterator(path, false, 2, null);
+
+        assertEquals("file1", iterator.next().getFileName().toString());
+        verify(client, timeout(5000).times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+        assertEquals("file2", iterator.next().getFileName().toString());
+        assertEquals("file3", iterator.next().getFileName().toString());
+        assertFalse(iterator.hasNext());
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void nextPageIsNotListedUntilThePageIsRead() throws Exception {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1", "dir/file2", "dir/file3");
+
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+        S3Iterator iterator = new S3Iterator(path, false, 2, null);
+
+        assertTrue(iterator.hasNext());
+        iterator.close();
+        Thread.sleep(100);
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void closedIteratorOnlyReturnsTheCurrentPage() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1", "dir/file2", "dir/file3", "dir/file4", "dir/file5");
+
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+        S3Iterator iterator = new S3Iterator(path, false, 2, null);
+        iterator.close();
+
+        assertIterator(iterator, "file1", "file2");
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void iteratorWithPageSize() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir", "dir/sub").file("dir/file1", "dir/file2", "dir/file3", "dir/sub/file4");
+
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+        S3Iterator iterator = new S3Iterator(path, false, 2, null);
+
+        assertIterator(iterator, "file1", "file2", "file3", "sub");
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void iteratorStartAfter() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucketA").dir("dir").file("dir/file1", "dir/file2", "dir/file3");
+
+        S3FileSystem s3FileSystem = (S3FileSystem) FileSystems.getFileSystem(endpoint);
+        S3Path path = s3FileSystem.getPath("/bucketA", "dir");
+        S3Iterator iterator = new S3Iterator(path, false, null, "dir/file1");
+
+        assertIterator(iterator, "file2", "file3");
     }
 
     @Test(expected = UnsupportedOperationException.class)
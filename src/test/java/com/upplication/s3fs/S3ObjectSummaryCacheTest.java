@@ -0,0 +1,224 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class S3ObjectSummaryCacheTest {
+
+    @Test
+    public void keysOfDifferentBucketsDoNotCollide() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        S3ObjectSummary summaryA = summary("bucketA", "file");
+        S3ObjectSummary summaryB = summary("bucketB", "file");
+
+        cache.put("bucketA", "file", summaryA);
+        cache.put("bucketB", "file", summaryB);
+
+        assertSame(summaryA, cache.get("bucketA", "file"));
+        assertSame(summaryB, cache.get("bucketB", "file"));
+        cache.remove("bucketA", "file");
+        assertNull(cache.get("bucketA", "file"));
+        assertSame(summaryB, cache.get("bucketB", "file"));
+    }
+
+    @Test
+    public void evictsWhenFull() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 2);
+
+        cache.put("bucket", "file1", summary("bucket", "file1"));
+        cache.put("bucket", "file2", summary("bucket", "file2"));
+        cache.put("bucket", "file3", summary("bucket", "file3"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.stats().evictionCount());
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturned() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(0, 100);
+
+        cache.put("bucket", "file1", summary("bucket", "file1"));
+
+        assertNull(cache.get("bucket", "file1"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        cache.put("bucket", "file1", summary("bucket", "file1"));
+
+        cache.get("bucket", "file1");
+        cache.get("bucket", "file1");
+        cache.get("bucket", "file2");
+
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void directoryIsResolvedFromACachedChild() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        S3ObjectSummary child = summary("bucket", "dir/file1");
+        cache.put("bucket", "dir/file1", child);
+
+        assertSame(child, cache.getOrCacheDirectory("bucket", "dir").get());
+        assertFalse(cache.getOrCacheDirectory("other", "dir").isPresent());
+        assertFalse(cache.getOrCacheDirectory("bucket", "di").isPresent());
+    }
+
+    @Test
+    public void directoryIsNotResolvedFromAnExpiredChild() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(0, 100);
+        cache.put("bucket", "dir/file1", summary("bucket", "dir/file1"));
+
+        assertFalse(cache.getOrCacheDirectory("bucket", "dir").isPresent());
+    }
+
+    @Test
+    public void removeTreeRemovesTheKeysUnderThePrefix() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        cache.put("bucket", "dir", summary("bucket", "dir/"));
+        cache.put("bucket", "dir/file1", summary("bucket", "dir/file1"));
+        cache.put("bucket", "dir/sub/file2", summary("bucket", "dir/sub/file2"));
+        cache.put("bucket", "dir2/file3", summary("bucket", "dir2/file3"));
+
+        cache.removeTree("bucket", "dir");
+
+        assertNull(cache.get("bucket", "dir"));
+        assertNull(cache.get("bucket", "dir/file1"));
+        assertNull(cache.get("bucket", "dir/sub/file2"));
+        assertFalse(cache.getOrCacheDirectory("bucket", "dir").isPresent());
+        assertNotNull(cache.get("bucket", "dir2/file3"));
+    }
+
+    @Test
+    public void concurrentLookupsOfAKeyRunOnce() throws InterruptedException {
+        final S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final S3ObjectSummary found = summary("bucket", "file1");
+        final List<Optional<S3ObjectSummary>> results = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> results.add(cache.lookupFile("bucket", "file1", () -> {
+                requests.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(cache.put("bucket", "file1", found));
+            })));
+            threads.add(thread);
+            thread.start();
+        }
+        // every thread is either running the lookup or waiting for it
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING)
+                Thread.sleep(1);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, requests.get());
+        assertEquals(8, results.size());
+        for (Optional<S3ObjectSummary> result : results) {
+            assertSame(found, result.get());
+        }
+    }
+
+    @Test
+    public void waitingForALookupCanBeInterrupted() throws InterruptedException {
+        final S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread lookup = new Thread(() -> cache.lookupFile("bucket", "file1", () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.empty();
+        }));
+        lookup.start();
+        running.await();
+        final List<Exception> failures = new CopyOnWriteArrayList<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                cache.lookupFile("bucket", "file1", Optional::empty);
+            } catch (AbortedException e) {
+                assertTrue(Thread.currentThread().isInterrupted());
+                failures.add(e);
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING)
+            Thread.sleep(1);
+
+        waiter.interrupt();
+        waiter.join();
+        release.countDown();
+        lookup.join();
+
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void lookupOfAKeyCachedMeanwhileIsNotRun() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        S3ObjectSummary file = cache.put("bucket", "file1", summary("bucket", "file1"));
+        S3ObjectSummary child = cache.put("bucket", "dir", summary("bucket", "dir/file2"));
+
+        // the flight of another caller ended after this one missed the cache
+        assertSame(file, cache.lookupFile("bucket", "file1", () -> {
+            throw new AssertionError("the lookup was run");
+        }).get());
+        assertSame(child, cache.lookupDirectory("bucket", "dir", () -> {
+            throw new AssertionError("the lookup was run");
+        }).get());
+    }
+
+    @Test
+    public void fileAndDirectoryLookupsAreNotCoalesced() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        S3ObjectSummary child = summary("bucket", "dir/file1");
+
+        Optional<S3ObjectSummary> directory = cache.lookupFile("bucket", "dir", () ->
+                cache.lookupDirectory("bucket", "dir", () -> Optional.of(child)));
+
+        assertSame(child, directory.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failedLookupIsNotRemembered() {
+        S3ObjectSummaryCache cache = new S3ObjectSummaryCache(-1, 100);
+        try {
+            cache.lookupFile("bucket", "file1", () -> {
+                throw new IllegalStateException("broken network");
+            });
+        } catch (IllegalStateException e) {
+            assertFalse(cache.lookupFile("bucket", "file1", Optional::empty).isPresent());
+            throw e;
+        }
+    }
+
+    private static S3ObjectSummary summary(String bucket, String key) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucket);
+        summary.setKey(key);
+        return summary;
+    }
+}
@@ -0,0 +1,125 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.MockBucket;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3ParallelListerTest extends S3UnitTestBase {
+
+    private static URI endpoint = URI.create("s3://s3parallellistertest.test");
+
+    private AmazonS3ClientMock client;
+    private S3FileSystem fileSystem;
+
+    @Before
+    public void prepare() throws IOException {
+        client = AmazonS3MockFactory.getAmazonClientMock();
+        reset(client);
+        fileSystem = (S3FileSystem) FileSystems.newFileSystem(endpoint, null);
+    }
+
+    @Test
+    public void directoryOfOnePageIsListedWithOneRequest() throws IOException {
+        client.bucket("bucketA").dir("dir", "dir/sub").file("dir/file1", "dir/sub/file2");
+
+        List<String> listed = list(fileSystem.getPath("/bucketA", "dir"), true);
+
+        assertEquals(Arrays.asList("dir/file1", "dir/sub", "dir/sub/file2"), listed);
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void keysAreSplitAtTheirFirstCharacter() throws IOException {
+        MockBucket bucket = client.bucket("bucketA");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            bucket.file(i + "file");
+            expected.add(i + "file");
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected, list(fileSystem.getPath("/bucketA"), true));
+        assertEquals(new HashSet<>(expected), new HashSet<>(list(fileSystem.getPath("/bucketA"), false)));
+    }
+
+    @Test
+    public void keysWithACommonNameAreSplitDeeper() throws IOException {
+        MockBucket bucket = client.bucket("bucketA").dir("dir");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            String name = String.format("part-%04d", i);
+            bucket.file("dir/" + name);
+            expected.add("dir/" + name);
+        }
+        reset(client);
+
+        assertEquals(expected, list(fileSystem.getPath("/bucketA", "dir"), true));
+        // the keys after the two listed pages all start with dir/part-2, the probes are made one level under it
+        verify(client, atLeast(1)).listObjectsV2(argThat(probe()));
+        verify(client, atMost(S3ParallelLister.SPLIT_CHARACTERS.length() + 8)).listObjectsV2(argThat(probe()));
+    }
+
+    @Test
+    public void directoryOfFewPagesIsNotSplit() throws IOException {
+        MockBucket bucket = client.bucket("bucketA").dir("dir");
+        for (int i = 0; i < 1500; i++) {
+            bucket.file(String.format("dir/part-%04d", i));
+        }
+        reset(client);
+
+        assertEquals(1500, list(fileSystem.getPath("/bucketA", "dir"), true).size());
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+        verify(client, never()).listObjectsV2(argThat(probe()));
+    }
+
+    @Test
+    public void pathsHaveTheirAttributes() throws IOException {
+        MockBucket bucket = client.bucket("bucketA");
+        for (int i = 0; i < 1500; i++) {
+            bucket.file(i + "file");
+        }
+        reset(client);
+
+        try (Stream<Path> paths = fileSystem.provider().listParallel(fileSystem.getPath("/bucketA"), false)) {
+            assertTrue(paths.allMatch(Files::isRegularFile));
+        }
+        verify(client, never()).getObjectMetadata(anyString(), anyString());
+    }
+
+    private ArgumentMatcher<ListObjectsV2Request> probe() {
+        return new ArgumentMatcher<ListObjectsV2Request>() {
+            @Override
+            public boolean matches(Object argument) {
+                ListObjectsV2Request request = (ListObjectsV2Request) argument;
+                return request.getMaxKeys() != null && request.getMaxKeys() == 1;
+            }
+        };
+    }
+
+    private List<String> list(Path dir, boolean ordered) throws IOException {
+        try (Stream<Path> paths = fileSystem.provider().listParallel(dir, ordered)) {
+            return paths.map(path -> ((S3Path) path).getKey()).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.upplication.s3fs;
+
+import org.junit.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.*;
+
+public class S3PathMatcherTest {
+
+    @Test
+    public void starDoesNotCrossNames() {
+        S3PathMatcher matcher = S3PathMatcher.of("glob:logs/*.gz");
+
+        assertTrue(matcher.matches("logs/part-1.gz"));
+        assertFalse(matcher.matches("logs/2026/part-1.gz"));
+        assertFalse(matcher.matches("logs/part-1.gz.tmp"));
+    }
+
+    @Test
+    public void doubleStarCrossesNames() {
+        S3PathMatcher matcher = S3PathMatcher.of("glob:logs/**/part-?.gz");
+
+        assertTrue(matcher.matches("logs/2026/10/part-1.gz"));
+        assertFalse(matcher.matches("logs/2026/10/part-12.gz"));
+    }
+
+    @Test
+    public void classesAndGroups() {
+        S3PathMatcher matcher = S3PathMatcher.of("glob:{data,logs}/file[0-9][!a-c].{gz,zip}");
+
+        assertTrue(matcher.matches("data/file1d.gz"));
+        assertTrue(matcher.matches("logs/file2e.zip"));
+        assertFalse(matcher.matches("logs/file2a.zip"));
+        assertFalse(matcher.matches("other/file1d.gz"));
+    }
+
+    @Test
+    public void specialCharactersAreLiteral() {
+        S3PathMatcher matcher = S3PathMatcher.of("glob:a+b(1).\\*");
+
+        assertTrue(matcher.matches("a+b(1).*"));
+        assertFalse(matcher.matches("a+b(1).x"));
+    }
+
+    @Test
+    public void literalPrefixStopsAtTheFirstSpecialCharacter() {
+        assertEquals("logs/2026-10-", S3PathMatcher.of("glob:logs/2026-10-*/part-*.gz").getLiteralPrefix());
+        assertEquals("", S3PathMatcher.of("glob:{a,b}/file").getLiteralPrefix());
+        assertEquals("a*b", S3PathMatcher.of("glob:a\\*b?").getLiteralPrefix());
+        assertEquals("", S3PathMatcher.of("regex:logs/.*").getLiteralPrefix());
+    }
+
+    @Test
+    public void globsWithSeveralNames() {
+        assertTrue(S3PathMatcher.of("glob:logs/*.gz").hasMultipleNames());
+        assertFalse(S3PathMatcher.of("glob:*.gz").hasMultipleNames());
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void unclosedClassIsInvalid() {
+        S3PathMatcher.of("glob:file[0-9");
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void unclosedGroupIsInvalid() {
+        S3PathMatcher.of("glob:file{a,b");
+    }
+}
@@ -0,0 +1,165 @@
+package com.upplication.s3fs;
+
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.MockBucket;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class S3TreeWalkerTest extends S3UnitTestBase {
+
+    private static URI endpoint = URI.create("s3://s3treewalkertest.test");
+
+    private AmazonS3ClientMock client;
+    private S3FileSystem fileSystem;
+
+    @Before
+    public void prepare() throws IOException {
+        client = AmazonS3MockFactory.getAmazonClientMock();
+        fileSystem = (S3FileSystem) FileSystems.newFileSystem(endpoint, null);
+    }
+
+    @Test
+    public void treeIsWalkedDepthFirstWithOneListing() throws IOException {
+        client.bucket("bucketA").dir("dir", "dir/a").file("dir/a/b/file1", "dir/a/file2", "dir/a-x", "dir/c");
+        reset(client);
+
+        List<String> walked = walk(fileSystem.getPath("/bucketA", "dir"), Integer.MAX_VALUE);
+
+        assertEquals(Arrays.asList("dir", "dir/a-x", "dir/a", "dir/a/b", "dir/a/b/file1", "dir/a/file2", "dir/c"), walked);
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void pathsCarryTheirAttributes() throws IOException {
+        client.bucket("bucketA").dir("dir").file("dir/sub/file1", "content".getBytes());
+        reset(client);
+
+        try (Stream<Path> tree = fileSystem.provider().walk(fileSystem.getPath("/bucketA", "dir"), Integer.MAX_VALUE)) {
+            List<BasicFileAttributes> attributes = tree.map(path -> ((S3Path) path).getFileAttributes()).collect(Collectors.toList());
+
+            assertEquals(3, attributes.size());
+            assertTrue(attributes.get(0).isDirectory());
+            assertTrue(attributes.get(1).isDirectory());
+            assertTrue(attributes.get(2).isRegularFile());
+            assertEquals("content".length(), attributes.get(2).size());
+        }
+        // only the start is read, the walked paths get their attributes from the listing
+        verify(client, atMost(1)).getObjectMetadata(anyString(), anyString());
+    }
+
+    @Test
+    public void walkStopsAtMaxDepth() throws IOException {
+        client.bucket("bucketA").dir("dir").file("dir/a/b/file1", "dir/a/file2", "dir/c");
+
+        assertEquals(Arrays.asList("dir", "dir/a", "dir/c"), walk(fileSystem.getPath("/bucketA", "dir"), 1));
+        assertEquals(Arrays.asList("dir"), walk(fileSystem.getPath("/bucketA", "dir"), 0));
+    }
+
+    @Test
+    public void bucketIsWalked() throws IOException {
+        client.bucket("bucketA").file("file1", "dir/file2");
+
+        assertEquals(Arrays.asList("", "dir", "dir/file2", "file1"), walk(fileSystem.getPath("/bucketA"), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void walkOfAFileReturnsTheFile() throws IOException {
+        client.bucket("bucketA").file("file1");
+
+        assertEquals(Arrays.asList("file1"), walk(fileSystem.getPath("/bucketA", "file1"), Integer.MAX_VALUE));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void walkOfAMissingPath() throws IOException {
+        client.bucket("bucketA");
+
+        walk(fileSystem.getPath("/bucketA", "missing"), Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void findMatchesOnTheAttributes() throws IOException {
+        client.bucket("bucketA").dir("dir", "dir/sub").file("dir/sub/file1", "dir/file2");
+
+        List<String> found;
+        try (Stream<Path> files = fileSystem.provider().find(fileSystem.getPath("/bucketA", "dir"), Integer.MAX_VALUE,
+                (path, attributes) -> attributes.isRegularFile())) {
+            found = files.map(path -> ((S3Path) path).getKey()).collect(Collectors.toList());
+        }
+
+        assertEquals(Arrays.asList("dir/file2", "dir/sub/file1"), found);
+    }
+
+    @Test
+    public void severalPagesAreWalked() throws IOException {
+        MockBucket bucket = client.bucket("bucketA");
+        bucket.dir("dir");
+        for (int i = 0; i < 1500; i++) {
+            bucket.file("dir/" + (i % 3) + "/" + i);
+        }
+        reset(client);
+
+        List<String> walked = walk(fileSystem.getPath("/bucketA", "dir"), Integer.MAX_VALUE);
+
+        assertEquals(1 + 3 + 1500, walked.size());
+        assertEquals(Arrays.asList("dir", "dir/0"), walked.subList(0, 2));
+        // the 500 files of dir/0 are between dir/0 and dir/1
+        assertEquals(501, walked.indexOf("dir/1") - walked.indexOf("dir/0"));
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void firstLevelIsWalkedWithADelimitedListing() throws IOException {
+        MockBucket bucket = client.bucket("bucketA");
+        bucket.dir("dir");
+        for (int i = 0; i < 1500; i++) {
+            bucket.file("dir/sub/" + i);
+        }
+        bucket.file("dir/file1");
+        reset(client);
+
+        assertEquals(Arrays.asList("dir", "dir/file1", "dir/sub"), walk(fileSystem.getPath("/bucketA", "dir"), 1));
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client, times(1)).listObjectsV2(request.capture());
+        assertEquals("/", request.getValue().getDelimiter());
+    }
+
+    @Test
+    public void keysBelowMaxDepthAreSkipped() throws IOException {
+        MockBucket bucket = client.bucket("bucketA");
+        bucket.dir("dir");
+        for (int i = 0; i < 2500; i++) {
+            bucket.file(String.format("dir/a/x/%04d", i));
+        }
+        bucket.file("dir/b/file1");
+        reset(client);
+
+        assertEquals(Arrays.asList("dir", "dir/a", "dir/a/x", "dir/b", "dir/b/file1"), walk(fileSystem.getPath("/bucketA", "dir"), 2));
+        // the first page is under dir/a/x, the next one starts after it
+        verify(client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    private List<String> walk(Path start, int maxDepth) throws IOException {
+        try (Stream<Path> tree = fileSystem.provider().walk(start, maxDepth)) {
+            return tree.map(path -> ((S3Path) path).getKey().replaceAll("/$", "")).collect(Collectors.toList());
+        }
+    }
+}
@@ -50,8 +50,6 @@ public class S3UnitTestBase {
                 //ignore
             }
         }
-
-        S3ObjectSummaryCache.INSTANCE.clear();
     }
 
     public S3FileSystemProvider getS3fsProvider() {
@@ -2,8 +2,8 @@ package com.upplication.s3fs;
 
 
 import com.amazonaws.services.s3.model.AmazonS3Exception;
-import com.amazonaws.services.s3.model.Owner;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.upplication.s3fs.attribute.S3PosixFileAttributes;
 import com.upplication.s3fs.util.AmazonS3ClientMock;
 import com.upplication.s3fs.util.AmazonS3MockFactory;
 import com.upplication.s3fs.util.S3EndpointConstant;
@@ -21,6 +21,8 @@ import java.nio.file.StandardOpenOption;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class S3UtilsTest extends S3UnitTestBase {
     private S3FileSystem fileSystem = null;
@@ -45,13 +47,32 @@ public class S3UtilsTest extends S3UnitTestBase {
         assertEquals(null, file1ObjectSummary.getETag());
         assertEquals("file1", file1ObjectSummary.getKey());
         assertNotNull(file1ObjectSummary.getLastModified());
-        Owner owner = file1ObjectSummary.getOwner();
-        assertNotNull(owner);
-        assertEquals("Mock", owner.getDisplayName());
-        assertEquals("1", owner.getId());
         assertEquals(19, file1ObjectSummary.getSize());
     }
 
+    @Test
+    public void getS3ObjectSummaryDoesNotRequestTheAcl() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucket").file("file1");
+        S3Path file1 = fileSystem.getPath("/bucket/file1");
+
+        getS3ObjectSummary(file1);
+
+        verify(client, never()).getObjectAcl("bucket", "file1");
+    }
+
+    @Test
+    public void posixOwnerIsResolvedLazilyFromTheBucket() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("bucket").file("file1");
+        S3Path file1 = fileSystem.getPath("/bucket/file1");
+
+        S3PosixFileAttributes attributes = new S3Utils().getS3PosixFileAttributes(file1);
+
+        assertEquals("1:Mock", attributes.owner().getName());
+        verify(client, never()).getObjectAcl("bucket", "file1");
+    }
+
 
     @Test(expected = NoSuchFileException.class)
     public void getS3ObjectSummary404() throws IOException {
@@ -65,10 +86,10 @@ public class S3UtilsTest extends S3UnitTestBase {
         AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
         AmazonS3Exception toBeThrown = new AmazonS3Exception("We messed up");
         toBeThrown.setStatusCode(500);
-        doThrow(toBeThrown).when(client).getObjectAcl("bucket", "file2");
         S3Path root = fileSystem.getPath("/bucket");
         S3Path file2 = (S3Path) root.resolve("file2");
         Files.createFile(file2);
+        doThrow(toBeThrown).when(client).getObjectMetadata("bucket", "file2");
         getS3ObjectSummary(file2);
     }
 
@@ -0,0 +1,97 @@
+package com.upplication.s3fs.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.upplication.s3fs.S3FileStore;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3Iterator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates a synthetic listing of a million keys (1000 pages of 1000 keys) without any network,
+ * so only the parsing and dedup of the pages is measured.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.upplication.s3fs.benchmark.S3IteratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class S3IteratorBenchmark {
+
+    private static final int PAGES = 1000;
+    private static final int KEYS_PER_PAGE = 1000;
+
+    private S3FileStore fileStore;
+
+    @Setup
+    public void setup() {
+        S3FileSystem fileSystem = new S3FileSystem(null, "benchmark", new SyntheticListingClient(), "endpoint");
+        fileStore = new S3FileStore(fileSystem, "bucket");
+    }
+
+    @Benchmark
+    public void flatListing(Blackhole blackhole) {
+        S3Iterator iterator = new S3Iterator(fileStore, "", true);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    @Benchmark
+    public void directoryListing(Blackhole blackhole) {
+        S3Iterator iterator = new S3Iterator(fileStore, "", false);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(S3IteratorBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Pages of keys like dir042/sub017/file00123, the page number is kept in the continuation token
+     */
+    static class SyntheticListingClient extends AbstractAmazonS3 {
+
+        @Override
+        public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+            int page = request.getContinuationToken() == null ? 0 : Integer.parseInt(request.getContinuationToken());
+            return page(request.getPrefix(), page);
+        }
+
+        private ListObjectsV2Result page(String prefix, int page) {
+            ListObjectsV2Result listing = new ListObjectsV2Result();
+            listing.setBucketName("bucket");
+            listing.setPrefix(prefix);
+            List<S3ObjectSummary> summaries = new ArrayList<>(KEYS_PER_PAGE);
+            for (int i = 0; i < KEYS_PER_PAGE; i++) {
+                int key = page * KEYS_PER_PAGE + i;
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName("bucket");
+                summary.setKey(String.format("dir%03d/sub%03d/file%05d", key / 10000, key / 100 % 100, key));
+                summary.setSize(key);
+                summaries.add(summary);
+            }
+            listing.getObjectSummaries().addAll(summaries);
+            if (page + 1 < PAGES) {
+                listing.setTruncated(true);
+                listing.setNextContinuationToken(String.valueOf(page + 1));
+            }
+            return listing;
+        }
+    }
+}
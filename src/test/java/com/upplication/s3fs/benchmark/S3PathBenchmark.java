@@ -0,0 +1,113 @@
+package com.upplication.s3fs.benchmark;
+
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3Path;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path API of {@link S3Path} on a deep key, no request is sent to S3.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.upplication.s3fs.benchmark.S3PathBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class S3PathBenchmark {
+
+    private static final String PATH = "/bucket/dir001/dir002/dir003/dir004/dir005/dir006/file.txt";
+
+    private S3FileSystem fileSystem;
+    private S3Path path;
+    private S3Path prefix;
+    private S3Path suffix;
+    private S3Path sibling;
+
+    @Setup
+    public void setup() {
+        fileSystem = new S3FileSystem(null, "benchmark", null, "endpoint");
+        path = new S3Path(fileSystem, PATH);
+        prefix = new S3Path(fileSystem, "/bucket/dir001/dir002/dir003/");
+        suffix = new S3Path(fileSystem, "dir006/file.txt");
+        sibling = new S3Path(fileSystem, "other.txt");
+    }
+
+    @Benchmark
+    public S3Path parse() {
+        return new S3Path(fileSystem, PATH);
+    }
+
+    @Benchmark
+    public String getKey() {
+        return path.getKey();
+    }
+
+    @Benchmark
+    public int getNameCount() {
+        return path.getNameCount();
+    }
+
+    @Benchmark
+    public Path getName() {
+        return path.getName(3);
+    }
+
+    @Benchmark
+    public Path getFileName() {
+        return path.getFileName();
+    }
+
+    @Benchmark
+    public void walkToRoot(Blackhole blackhole) {
+        Path current = path;
+        while (current != null) {
+            blackhole.consume(current);
+            current = current.getParent();
+        }
+    }
+
+    @Benchmark
+    public Path subpath() {
+        return path.subpath(1, 5);
+    }
+
+    @Benchmark
+    public void iterator(Blackhole blackhole) {
+        for (Path name : path) {
+            blackhole.consume(name);
+        }
+    }
+
+    @Benchmark
+    public boolean startsWith() {
+        return path.startsWith(prefix);
+    }
+
+    @Benchmark
+    public boolean endsWith() {
+        return path.endsWith(suffix);
+    }
+
+    @Benchmark
+    public Path resolveSibling() {
+        return path.resolveSibling(sibling);
+    }
+
+    @Benchmark
+    public int hashCodeAndEquals() {
+        return path.hashCode() + (path.equals(prefix) ? 1 : 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(S3PathBenchmark.class.getSimpleName()).build()).run();
+    }
+}
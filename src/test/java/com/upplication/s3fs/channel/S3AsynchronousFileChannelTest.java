@@ -0,0 +1,171 @@
+package com.upplication.s3fs.channel;
+
+import com.amazonaws.services.s3.model.*;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3UnitTestBase;
+import com.upplication.s3fs.channels.S3AsynchronousFileChannel;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.S3EndpointConstant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3AsynchronousFileChannelTest extends S3UnitTestBase {
+
+    private static final int MB = 1024 * 1024;
+
+    private AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+    private S3Path file1;
+
+    @Before
+    public void setup() throws IOException {
+        FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        reset(client);
+        client.bucket("buck").file("file1", "0123456789abcdef".getBytes());
+        file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void positionalReadsAreRangedGets() throws Exception {
+        try (AsynchronousFileChannel channel = new S3AsynchronousFileChannel(file1, EnumSet.of(READ), executor, new Properties())) {
+            assertEquals(16, channel.size());
+            ByteBuffer first = ByteBuffer.allocate(4);
+            ByteBuffer last = ByteBuffer.allocate(4);
+            Future<Integer> firstRead = channel.read(first, 0);
+            Future<Integer> lastRead = channel.read(last, 12);
+
+            assertEquals(4, (int) firstRead.get(5, TimeUnit.SECONDS));
+            assertEquals(4, (int) lastRead.get(5, TimeUnit.SECONDS));
+            assertArrayEquals("0123".getBytes(), first.array());
+            assertArrayEquals("cdef".getBytes(), last.array());
+            assertEquals(-1, (int) channel.read(ByteBuffer.allocate(4), 16).get(5, TimeUnit.SECONDS));
+        }
+
+        ArgumentCaptor<GetObjectRequest> requests = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client, times(2)).getObject(requests.capture());
+        for (GetObjectRequest request : requests.getAllValues()) {
+            assertEquals(3, request.getRange()[1] - request.getRange()[0]);
+        }
+    }
+
+    @Test
+    public void readCompletesTheHandler() throws Exception {
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        ByteBuffer buffer = ByteBuffer.allocate(6);
+        try (AsynchronousFileChannel channel = new S3AsynchronousFileChannel(file1, EnumSet.of(READ), executor, new Properties())) {
+            channel.read(buffer, 10, "attachment", new CompletionHandler<Integer, String>() {
+                @Override
+                public void completed(Integer read, String attachment) {
+                    result.complete(read);
+                }
+
+                @Override
+                public void failed(Throwable exc, String attachment) {
+                    result.completeExceptionally(exc);
+                }
+            });
+            assertEquals(6, (int) result.get(5, TimeUnit.SECONDS));
+        }
+        assertArrayEquals("abcdef".getBytes(), buffer.array());
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void readNotExists() throws IOException {
+        S3Path notExists = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file2");
+        new S3AsynchronousFileChannel(notExists, EnumSet.of(READ), executor, new Properties());
+    }
+
+    @Test(expected = NonWritableChannelException.class)
+    public void readChannelIsNotWritable() throws IOException {
+        try (AsynchronousFileChannel channel = new S3AsynchronousFileChannel(file1, EnumSet.of(READ), executor, new Properties())) {
+            channel.write(ByteBuffer.wrap("x".getBytes()), 0);
+        }
+    }
+
+    @Test
+    public void smallFileIsUploadedWithOnePut() throws Exception {
+        final AtomicReference<byte[]> uploaded = new AtomicReference<>();
+        doAnswer(invocation -> {
+            PutObjectRequest request = (PutObjectRequest) invocation.getArguments()[0];
+            uploaded.set(Files.readAllBytes(request.getFile().toPath()));
+            return new PutObjectResult();
+        }).when(client).putObject(any(PutObjectRequest.class));
+
+        try (AsynchronousFileChannel channel = new S3AsynchronousFileChannel(file1, EnumSet.of(WRITE, TRUNCATE_EXISTING), executor, new Properties())) {
+            // written out of order
+            Future<Integer> tail = channel.write(ByteBuffer.wrap("world".getBytes()), 6);
+            Future<Integer> head = channel.write(ByteBuffer.wrap("hello ".getBytes()), 0);
+            assertEquals(5, (int) tail.get(5, TimeUnit.SECONDS));
+            assertEquals(6, (int) head.get(5, TimeUnit.SECONDS));
+            assertEquals(11, channel.size());
+        }
+
+        assertArrayEquals("hello world".getBytes(), uploaded.get());
+        verify(client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void completePartsAreUploadedWhileWriting() throws Exception {
+        InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+        initResult.setUploadId("upload");
+        doReturn(initResult).when(client).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+        doAnswer(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        }).when(client).uploadPart(any(UploadPartRequest.class));
+        doReturn(new CompleteMultipartUploadResult()).when(client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        Properties properties = new Properties();
+        properties.setProperty("s3fs_multipart_part_size", String.valueOf(5 * MB));
+
+        byte[] part = new byte[5 * MB];
+        Arrays.fill(part, (byte) 'a');
+        try (AsynchronousFileChannel channel = new S3AsynchronousFileChannel(file1, EnumSet.of(WRITE, TRUNCATE_EXISTING), executor, properties)) {
+            channel.write(ByteBuffer.wrap(part), 0).get(5, TimeUnit.SECONDS);
+            // the first part is complete and uploaded before close
+            verify(client, timeout(5000)).uploadPart(any(UploadPartRequest.class));
+            channel.write(ByteBuffer.wrap("tail".getBytes()), 5 * MB).get(5, TimeUnit.SECONDS);
+        }
+
+        ArgumentCaptor<UploadPartRequest> uploads = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(2)).uploadPart(uploads.capture());
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertEquals(2, complete.getValue().getPartETags().size());
+        assertEquals("etag1", complete.getValue().getPartETags().get(0).getETag());
+        assertEquals("etag2", complete.getValue().getPartETags().get(1).getETag());
+    }
+}
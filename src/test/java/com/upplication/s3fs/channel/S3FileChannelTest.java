@@ -19,6 +19,7 @@ import java.nio.channels.NonWritableChannelException;
 import java.nio.file.*;
 import java.util.EnumSet;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
 
@@ -104,6 +105,35 @@ public class S3FileChannelTest extends S3UnitTestBase {
         verify(client, times(1)).putObject(eq("buck"), eq("file1"), any(InputStream.class), any(ObjectMetadata.class));
     }
 
+    @Test
+    public void overwriteDoesNotDownloadTheObject() throws IOException {
+        client.bucket("buck").file("file1", "content".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3FileChannel channel = new S3FileChannel(file1, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        channel.write(ByteBuffer.wrap("hoi".getBytes()));
+        channel.close();
+
+        verify(client, never()).getObject(anyString(), anyString());
+        verify(client, never()).getObjectMetadata(anyString(), anyString());
+        verify(client, times(1)).putObject(eq("buck"), eq("file1"), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
+    @Test
+    public void sizeDoesNotDownloadTheObject() throws IOException {
+        client.bucket("buck").file("file1", "content".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3FileChannel channel = new S3FileChannel(file1, EnumSet.of(StandardOpenOption.WRITE));
+        assertEquals(7, channel.size());
+        channel.close();
+
+        // the mock answers the HEAD with getObject
+        verify(client, times(1)).getObjectMetadata("buck", "file1");
+        verify(client, times(1)).getObject("buck", "file1");
+        verify(client, never()).putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
     @Test(expected = FileAlreadyExistsException.class)
     public void alreadyExists() throws IOException {
         client.bucket("buck").file("file1");
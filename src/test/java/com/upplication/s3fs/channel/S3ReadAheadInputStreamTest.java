@@ -0,0 +1,92 @@
+package com.upplication.s3fs.channel;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3UnitTestBase;
+import com.upplication.s3fs.channels.S3ReadAheadInputStream;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.IOUtils;
+import com.upplication.s3fs.util.S3EndpointConstant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.upplication.s3fs.AmazonS3Factory.READ_AHEAD_PARTS;
+import static com.upplication.s3fs.AmazonS3Factory.READ_AHEAD_PART_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3ReadAheadInputStreamTest extends S3UnitTestBase {
+
+    private AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+    private Properties properties = new Properties();
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setup() throws IOException {
+        FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        reset(client);
+        properties.setProperty(READ_AHEAD_PART_SIZE, "4");
+        properties.setProperty(READ_AHEAD_PARTS, "2");
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readAllPartsInOrder() throws IOException {
+        client.bucket("buck").file("file1", "0123456789abcdefg".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (InputStream stream = new S3ReadAheadInputStream(file1, properties, executor)) {
+            assertArrayEquals("0123456789abcdefg".getBytes(), IOUtils.toByteArray(stream));
+        }
+
+        verify(client, times(5)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void smallFileUsesOneRequest() throws IOException {
+        client.bucket("buck").file("file1", "012".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (InputStream stream = new S3ReadAheadInputStream(file1, properties, executor)) {
+            assertEquals('0', stream.read());
+            assertArrayEquals("12".getBytes(), IOUtils.toByteArray(stream));
+            assertEquals(-1, stream.read());
+        }
+
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        client.bucket("buck").file("file1", new byte[0]);
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (InputStream stream = new S3ReadAheadInputStream(file1, properties, executor)) {
+            assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void notExists() throws IOException {
+        client.bucket("buck");
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        new S3ReadAheadInputStream(file1, properties, executor);
+    }
+}
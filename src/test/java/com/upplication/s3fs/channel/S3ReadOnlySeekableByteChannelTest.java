@@ -0,0 +1,117 @@
+package com.upplication.s3fs.channel;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3UnitTestBase;
+import com.upplication.s3fs.channels.S3ReadOnlySeekableByteChannel;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.S3EndpointConstant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.util.Properties;
+
+import static com.upplication.s3fs.AmazonS3Factory.READ_BLOCK_CACHE_SIZE;
+import static com.upplication.s3fs.AmazonS3Factory.READ_BLOCK_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3ReadOnlySeekableByteChannelTest extends S3UnitTestBase {
+
+    private AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+    private Properties properties = new Properties();
+
+    @Before
+    public void setup() throws IOException {
+        FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        reset(client);
+        properties.setProperty(READ_BLOCK_SIZE, "4");
+        properties.setProperty(READ_BLOCK_CACHE_SIZE, "2");
+    }
+
+    @Test
+    public void readFooterOnlyFetchesLastBlock() throws IOException {
+        client.bucket("buck").file("file1", "0123456789abcdef".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (S3ReadOnlySeekableByteChannel channel = new S3ReadOnlySeekableByteChannel(file1, properties)) {
+            assertEquals(16, channel.size());
+            ByteBuffer footer = ByteBuffer.allocate(2);
+            channel.position(14);
+            channel.read(footer);
+            assertArrayEquals("ef".getBytes(), footer.array());
+            assertEquals(16, channel.position());
+        }
+
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void readAcrossBlocksUsesOneRequest() throws IOException {
+        client.bucket("buck").file("file1", "0123456789abcdef".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (S3ReadOnlySeekableByteChannel channel = new S3ReadOnlySeekableByteChannel(file1, properties)) {
+            ByteBuffer buffer = ByteBuffer.allocate(6);
+            channel.position(2);
+            assertEquals(6, channel.read(buffer));
+            assertArrayEquals("234567".getBytes(), buffer.array());
+            // served from the cached blocks
+            buffer.clear();
+            channel.position(2);
+            assertEquals(6, channel.read(buffer));
+            assertArrayEquals("234567".getBytes(), buffer.array());
+        }
+
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void readUntilEnd() throws IOException {
+        client.bucket("buck").file("file1", "0123456789".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (S3ReadOnlySeekableByteChannel channel = new S3ReadOnlySeekableByteChannel(file1, properties)) {
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            assertEquals(10, channel.read(buffer));
+            assertEquals(-1, channel.read(buffer));
+        }
+    }
+
+    @Test(expected = NonWritableChannelException.class)
+    public void write() throws IOException {
+        client.bucket("buck").file("file1");
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        try (S3ReadOnlySeekableByteChannel channel = new S3ReadOnlySeekableByteChannel(file1, properties)) {
+            channel.write(ByteBuffer.wrap("hoi".getBytes()));
+        }
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void readAfterClose() throws IOException {
+        client.bucket("buck").file("file1");
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3ReadOnlySeekableByteChannel channel = new S3ReadOnlySeekableByteChannel(file1, properties);
+        channel.close();
+        channel.read(ByteBuffer.allocate(1));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void notExists() throws IOException {
+        client.bucket("buck");
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        new S3ReadOnlySeekableByteChannel(file1, properties);
+    }
+}
@@ -1,5 +1,6 @@
 package com.upplication.s3fs.channel;
 
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.upplication.s3fs.S3Path;
 import com.upplication.s3fs.S3UnitTestBase;
 import com.upplication.s3fs.channels.S3SeekableByteChannel;
@@ -10,11 +11,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.util.EnumSet;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
 
@@ -23,6 +27,8 @@ public class S3SeekableByteChannelTest extends S3UnitTestBase {
     @Before
     public void setup() throws IOException {
         FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        // the client is shared by every test: only count the requests of this one
+        reset(AmazonS3MockFactory.getAmazonClientMock());
     }
 
     @Test
@@ -65,6 +71,55 @@ public class S3SeekableByteChannelTest extends S3UnitTestBase {
         verify(channel, times(1)).sync();
     }
 
+    @Test
+    public void overwriteDoesNotDownloadTheObject() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("buck").file("file1", "content".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3SeekableByteChannel channel = new S3SeekableByteChannel(file1, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        channel.write(ByteBuffer.wrap("hoi".getBytes()));
+        channel.close();
+
+        verify(client, never()).getObject(anyString(), anyString());
+        verify(client, never()).getObjectMetadata(anyString(), anyString());
+        verify(client).putObject(eq("buck"), eq("file1"), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
+    @Test
+    public void sizeDoesNotDownloadTheObject() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("buck").file("file1", "content".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3SeekableByteChannel channel = new S3SeekableByteChannel(file1, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.READ));
+        assertEquals(7, channel.size());
+        channel.close();
+
+        // the mock answers the HEAD with getObject
+        verify(client, times(1)).getObjectMetadata("buck", "file1");
+        verify(client, times(1)).getObject("buck", "file1");
+        verify(client, never()).putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
+    @Test
+    public void firstReadDownloadsTheObject() throws IOException {
+        AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+        client.bucket("buck").file("file1", "content".getBytes());
+
+        S3Path file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        S3SeekableByteChannel channel = new S3SeekableByteChannel(file1, EnumSet.of(StandardOpenOption.READ));
+        channel.position(3);
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer);
+        channel.close();
+
+        assertArrayEquals("tent".getBytes(), buffer.array());
+        // the HEAD at open, answered by the mock with getObject, and the download
+        verify(client, times(1)).getObjectMetadata("buck", "file1");
+        verify(client, times(2)).getObject("buck", "file1");
+    }
+
     @Test(expected = FileAlreadyExistsException.class)
     public void alreadyExists() throws IOException {
         AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
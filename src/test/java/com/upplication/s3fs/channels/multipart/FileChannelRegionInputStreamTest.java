@@ -0,0 +1,59 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.upplication.s3fs.util.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FileChannelRegionInputStreamTest {
+
+    private Path tempFile;
+    private FileChannel fileChannel;
+
+    @Before
+    public void setup() throws IOException {
+        tempFile = Files.createTempFile("region", "test");
+        fileChannel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileChannel.write(ByteBuffer.wrap("0123456789".getBytes()));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        fileChannel.close();
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    public void readsOnlyTheRegion() throws IOException {
+        InputStream stream = new FileChannelRegionInputStream(fileChannel, 3, 4);
+        assertThat(new String(IOUtils.toByteArray(stream))).isEqualTo("3456");
+        assertThat(stream.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void doesNotMoveTheChannelPosition() throws IOException {
+        fileChannel.position(1);
+        IOUtils.toByteArray(new FileChannelRegionInputStream(fileChannel, 5, 5));
+        assertThat(fileChannel.position()).isEqualTo(1);
+    }
+
+    @Test
+    public void resetsToMark() throws IOException {
+        InputStream stream = new FileChannelRegionInputStream(fileChannel, 2, 6);
+        assertThat(stream.read()).isEqualTo('2');
+        stream.mark(Integer.MAX_VALUE);
+        assertThat(stream.read()).isEqualTo('3');
+        stream.reset();
+        assertThat(new String(IOUtils.toByteArray(stream))).isEqualTo("34567");
+    }
+}
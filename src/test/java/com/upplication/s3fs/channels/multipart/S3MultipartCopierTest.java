@@ -0,0 +1,123 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class S3MultipartCopierTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final AmazonS3 s3Client = mock(AmazonS3.class);
+    private ObjectMetadata sourceMetadata;
+    private S3MultipartCopier copier;
+
+    @Before
+    public void setup() {
+        sourceMetadata = new ObjectMetadata();
+        sourceMetadata.setContentLength(12 * MB);
+        sourceMetadata.setContentType("application/json");
+        sourceMetadata.setUserMetadata(Collections.singletonMap("owner", "me"));
+        sourceMetadata.setHeader("ETag", "source-etag");
+        when(s3Client.getObjectMetadata("bucketA", "source")).thenReturn(sourceMetadata);
+
+        InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+        initResult.setUploadId("upload");
+        when(s3Client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initResult);
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(new CompleteMultipartUploadResult());
+
+        copier = S3MultipartCopier.builder()
+                .s3Client(s3Client)
+                .sourceBucket("bucketA")
+                .sourceKey("source")
+                .targetBucket("bucketB")
+                .targetKey("target")
+                .partSize(5 * MB)
+                .maxInFlightParts(2)
+                .build();
+    }
+
+    @Test
+    public void copiesTheRangesOfEveryPart() throws IOException {
+        when(s3Client.copyPart(any(CopyPartRequest.class))).thenAnswer(invocation -> {
+            CopyPartRequest request = (CopyPartRequest) invocation.getArguments()[0];
+            CopyPartResult result = new CopyPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        });
+
+        copier.copy();
+
+        ArgumentCaptor<CopyPartRequest> copyParts = ArgumentCaptor.forClass(CopyPartRequest.class);
+        verify(s3Client, times(3)).copyPart(copyParts.capture());
+        List<CopyPartRequest> requests = copyParts.getAllValues();
+        assertThat(requests).extracting("firstByte").containsOnly(0L, 5 * MB, 10 * MB);
+        assertThat(requests).extracting("lastByte").containsOnly(5 * MB - 1, 10 * MB - 1, 12 * MB - 1);
+        assertThat(requests).extracting("matchingETagConstraints").containsOnly(Collections.singletonList("source-etag"));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getPartETags()).extracting("partNumber").containsExactly(1, 2, 3);
+        assertThat(complete.getValue().getPartETags()).extracting("eTag").containsExactly("etag1", "etag2", "etag3");
+    }
+
+    @Test
+    public void carriesTheMetadataOver() throws IOException {
+        when(s3Client.copyPart(any(CopyPartRequest.class))).thenReturn(new CopyPartResult());
+
+        copier.copy();
+
+        ArgumentCaptor<InitiateMultipartUploadRequest> init = ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+        verify(s3Client).initiateMultipartUpload(init.capture());
+        assertThat(init.getValue().getBucketName()).isEqualTo("bucketB");
+        assertThat(init.getValue().getKey()).isEqualTo("target");
+        assertThat(init.getValue().getObjectMetadata().getContentType()).isEqualTo("application/json");
+        assertThat(init.getValue().getObjectMetadata().getUserMetadata()).containsEntry("owner", "me");
+    }
+
+    @Test
+    public void givenMetadataIsNotReadAgain() throws IOException {
+        when(s3Client.copyPart(any(CopyPartRequest.class))).thenReturn(new CopyPartResult());
+
+        S3MultipartCopier.builder()
+                .s3Client(s3Client)
+                .sourceBucket("bucketA")
+                .sourceKey("source")
+                .sourceMetadata(sourceMetadata)
+                .targetBucket("bucketB")
+                .targetKey("target")
+                .partSize(5 * MB)
+                .build()
+                .copy();
+
+        verify(s3Client, never()).getObjectMetadata(anyString(), anyString());
+        verify(s3Client, times(3)).copyPart(any(CopyPartRequest.class));
+    }
+
+    @Test
+    public void abortsWhenThePartsCanNotBeCopied() {
+        // the ETag constraint failed
+        when(s3Client.copyPart(any(CopyPartRequest.class))).thenReturn(null);
+
+        try {
+            copier.copy();
+        } catch (IOException e) {
+            verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+            verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+            return;
+        }
+        throw new AssertionError("expected IOException");
+    }
+}
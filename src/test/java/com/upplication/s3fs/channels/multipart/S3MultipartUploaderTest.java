@@ -0,0 +1,135 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3UnitTestBase;
+import com.upplication.s3fs.util.S3EndpointConstant;
+import io.reactivex.Single;
+import io.reactivex.subjects.ReplaySubject;
+import io.reactivex.subjects.Subject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3MultipartUploaderTest extends S3UnitTestBase {
+
+    private final AmazonS3 s3Client = mock(AmazonS3.class);
+    private Path tempFile;
+    private FileChannel uploadChannel;
+    private final Subject<PartKey> changingParts = ReplaySubject.create();
+    private S3MultipartUploader uploader;
+
+    @Before
+    public void setup() throws IOException {
+        FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        S3Path path = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+
+        tempFile = Files.createTempFile("multipart", "test");
+        uploadChannel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        uploadChannel.write(ByteBuffer.wrap("0123456789012345678901234".getBytes()));
+
+        InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+        initResult.setUploadId("upload");
+        when(s3Client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initResult);
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(new CompleteMultipartUploadResult());
+
+        uploader = S3MultipartUploader.builder()
+                .changingParts(changingParts)
+                .objectMetadata(new ObjectMetadata())
+                .s3Client(s3Client)
+                .path(path)
+                .uploadChannel(uploadChannel)
+                .partSize(5L)
+                .maxInFlightParts(2)
+                .build();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        uploadChannel.close();
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    public void completesWithPartETagsInPartOrder() throws Exception {
+        final CountDownLatch firstPartReleased = new CountDownLatch(1);
+        when(s3Client.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            // the first part finishes after the second one
+            if (request.getPartNumber() == 1)
+                firstPartReleased.await(5, TimeUnit.SECONDS);
+            else
+                firstPartReleased.countDown();
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        });
+
+        upload(3);
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getPartETags()).extracting("partNumber").containsExactly(1, 2, 3);
+        assertThat(complete.getValue().getPartETags()).extracting("eTag").containsExactly("etag1", "etag2", "etag3");
+    }
+
+    @Test
+    public void neverExceedsMaxInFlightParts() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return new UploadPartResult();
+        });
+
+        upload(5);
+
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        verify(s3Client, times(5)).uploadPart(any(UploadPartRequest.class));
+    }
+
+    @Test
+    public void abortsUploadWhenAPartFails() {
+        when(s3Client.uploadPart(any(UploadPartRequest.class))).thenThrow(new AmazonS3Exception("failed"));
+
+        try {
+            upload(3);
+        } catch (IllegalStateException e) {
+            verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+            verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+            return;
+        }
+        throw new AssertionError("expected IllegalStateException");
+    }
+
+    /**
+     * write the parts of 5 bytes to the uploader like a channel does and wait for the end of the upload
+     */
+    private MultipartUploadSummary upload(int parts) {
+        Single<MultipartUploadSummary> summary = uploader.upload(changingParts::onComplete);
+        for (int i = 0; i < parts; i++) {
+            changingParts.onNext(PartKey.builder().start(i * 5L).length(5L).build());
+        }
+        return summary.blockingGet();
+    }
+}
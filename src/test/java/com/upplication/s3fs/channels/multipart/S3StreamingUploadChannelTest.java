@@ -0,0 +1,167 @@
+package com.upplication.s3fs.channels.multipart;
+
+import com.amazonaws.services.s3.model.*;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3UnitTestBase;
+import com.upplication.s3fs.util.AmazonS3ClientMock;
+import com.upplication.s3fs.util.AmazonS3MockFactory;
+import com.upplication.s3fs.util.IOUtils;
+import com.upplication.s3fs.util.S3EndpointConstant;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_MAX_IN_FLIGHT_PARTS;
+import static com.upplication.s3fs.AmazonS3Factory.MULTIPART_PART_SIZE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.entry;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class S3StreamingUploadChannelTest extends S3UnitTestBase {
+
+    private AmazonS3ClientMock client = AmazonS3MockFactory.getAmazonClientMock();
+    private Properties properties = new Properties();
+    private DirectBufferPool bufferPool = new DirectBufferPool(4);
+    private Map<Integer, String> uploadedParts = new ConcurrentSkipListMap<>();
+    private S3Path file1;
+
+    @Before
+    public void setup() throws IOException {
+        FileSystems.newFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST, null);
+        reset(client);
+        client.bucket("buck");
+        file1 = (S3Path) FileSystems.getFileSystem(S3EndpointConstant.S3_GLOBAL_URI_TEST).getPath("/buck/file1");
+        properties.setProperty(MULTIPART_PART_SIZE, "4");
+        properties.setProperty(MULTIPART_MAX_IN_FLIGHT_PARTS, "2");
+
+        InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+        initResult.setUploadId("upload");
+        doReturn(initResult).when(client).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+        doAnswer(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            try (InputStream in = request.getInputStream()) {
+                uploadedParts.put(request.getPartNumber(), new String(IOUtils.toByteArray(in)));
+            }
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        }).when(client).uploadPart(any(UploadPartRequest.class));
+        doReturn(new CompleteMultipartUploadResult()).when(client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void smallObjectIsUploadedWithPutObject() throws IOException {
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap("abc".getBytes()));
+        }
+
+        assertThat(new String(Files.readAllBytes(file1))).isEqualTo("abc");
+        verify(client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void bigObjectIsUploadedInParts() throws IOException {
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap("0123456".getBytes()));
+            channel.write(ByteBuffer.wrap("789abcdefgh".getBytes()));
+        }
+
+        assertThat(uploadedParts).containsExactly(
+                entry(1, "0123"), entry(2, "4567"), entry(3, "89ab"), entry(4, "cdef"), entry(5, "gh"));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getPartETags()).extracting("partNumber").containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void smallObjectTakesNoPartBuffer() throws IOException {
+        properties.setProperty(MULTIPART_PART_SIZE, String.valueOf(32 * 1024 * 1024));
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap("abc".getBytes()));
+        }
+
+        assertThat(new String(Files.readAllBytes(file1))).isEqualTo("abc");
+        assertThat(bufferPool.idle()).isEqualTo(0);
+    }
+
+    @Test
+    public void firstBufferGrowsUpToThePartSize() throws IOException {
+        int partSize = 160 * 1024;
+        properties.setProperty(MULTIPART_PART_SIZE, String.valueOf(partSize));
+        byte[] content = new byte[partSize + 10];
+        Arrays.fill(content, (byte) 'a');
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap(content));
+        }
+
+        assertThat(uploadedParts.get(1)).hasSize(partSize);
+        assertThat(uploadedParts.get(2)).hasSize(10);
+    }
+
+    @Test
+    public void partBuffersAreGivenBackToThePool() throws IOException {
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap("0123456789ab".getBytes()));
+        }
+
+        // the first part was collected in a heap buffer, the next ones in direct buffers of the pool
+        assertThat(bufferPool.idle()).isGreaterThan(0);
+        assertThat(bufferPool.take(4).isDirect()).isTrue();
+    }
+
+    @Test
+    public void partSizeAboveTheBufferLimitIsClamped() throws IOException {
+        properties.setProperty(MULTIPART_PART_SIZE, String.valueOf(3L * 1024 * 1024 * 1024));
+        try (S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool)) {
+            channel.write(ByteBuffer.wrap("abc".getBytes()));
+        }
+
+        assertThat(new String(Files.readAllBytes(file1))).isEqualTo("abc");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partSizeMustBePositive() throws IOException {
+        properties.setProperty(MULTIPART_PART_SIZE, "0");
+        new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool);
+    }
+
+    @Test
+    public void failedPartAbortsTheUpload() throws IOException {
+        doThrow(new AmazonS3Exception("failed")).when(client).uploadPart(any(UploadPartRequest.class));
+        doNothing().when(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+
+        S3StreamingUploadChannel channel = new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE), properties, bufferPool);
+        channel.write(ByteBuffer.wrap("0123456789".getBytes()));
+        try {
+            channel.close();
+        } catch (IOException e) {
+            verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+            verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+            return;
+        }
+        throw new AssertionError("expected IOException");
+    }
+
+    @Test(expected = FileAlreadyExistsException.class)
+    public void createNewWhenExists() throws IOException {
+        client.bucket("buck").file("file1");
+        new S3StreamingUploadChannel(file1, EnumSet.of(WRITE, CREATE_NEW), properties, bufferPool);
+    }
+}
@@ -154,7 +154,64 @@ public class AmazonS3ClientMock extends AbstractAmazonS3 {
 
     @Override
     public ListObjectsV2Result listObjectsV2(ListObjectsV2Request listObjectsV2Request) throws AmazonClientException {
-        return null;
+        String bucketName = listObjectsV2Request.getBucketName();
+        String prefix = listObjectsV2Request.getPrefix() == null ? "" : listObjectsV2Request.getPrefix();
+        String delimiter = listObjectsV2Request.getDelimiter();
+        String startAfter = listObjectsV2Request.getStartAfter();
+        // the continuation token is the first key of the page
+        String continuationToken = listObjectsV2Request.getContinuationToken();
+        int maxKeys = listObjectsV2Request.getMaxKeys() != null ? listObjectsV2Request.getMaxKeys() : LIMIT_AWS_MAX_ELEMENTS;
+
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        result.setBucketName(bucketName);
+        result.setPrefix(listObjectsV2Request.getPrefix());
+        result.setDelimiter(delimiter);
+        result.setStartAfter(startAfter);
+        result.setContinuationToken(continuationToken);
+        result.setMaxKeys(maxKeys);
+
+        final Path bucket = find(bucketName);
+        final TreeMap<String, S3Element> elems = new TreeMap<>();
+        try {
+            for (Path elem : Files.newDirectoryStream(bucket)) {
+                S3Element element = parse(elem, bucket);
+                if (!elems.containsKey(element.getS3Object().getKey()))
+                    elems.put(element.getS3Object().getKey(), element);
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException(e);
+        }
+
+        int keyCount = 0;
+        for (S3Element elem : elems.values()) {
+            String key = elem.getS3Object().getKey();
+            if (key.equals("/") || !key.startsWith(prefix))
+                continue;
+            if (continuationToken != null && key.compareTo(continuationToken) < 0)
+                continue;
+            if (startAfter != null && key.compareTo(startAfter) <= 0)
+                continue;
+
+            String rest = key.substring(prefix.length());
+            String commonPrefix = null;
+            if (delimiter != null && delimiter.length() > 0 && rest.contains(delimiter)) {
+                commonPrefix = key.substring(0, prefix.length() + rest.indexOf(delimiter) + delimiter.length());
+                if (result.getCommonPrefixes().contains(commonPrefix))
+                    continue;
+            }
+            if (keyCount == maxKeys) {
+                result.setTruncated(true);
+                result.setNextContinuationToken(key);
+                break;
+            }
+            if (commonPrefix != null)
+                result.getCommonPrefixes().add(commonPrefix);
+            else
+                result.getObjectSummaries().add(parseToS3ObjectSummary(elem));
+            keyCount++;
+        }
+        result.setKeyCount(keyCount);
+        return result;
     }
 
     @Override
@@ -957,7 +1014,22 @@ public class AmazonS3ClientMock extends AbstractAmazonS3 {
 
     @Override
     public S3Object getObject(GetObjectRequest getObjectRequest) throws AmazonClientException {
-        throw new UnsupportedOperationException();
+        S3Object object = getObject(getObjectRequest.getBucketName(), getObjectRequest.getKey());
+        long[] range = getObjectRequest.getRange();
+        if (range == null || object.getObjectContent() == null)
+            return object;
+        try {
+            byte[] content = IOUtils.toByteArray(object.getObjectContent());
+            int start = (int) Math.min(range[0], content.length);
+            int end = (int) Math.min(range[1] + 1, content.length);
+            byte[] slice = Arrays.copyOfRange(content, start, end);
+            object.setObjectContent(new ByteArrayInputStream(slice));
+            object.getObjectMetadata().setContentLength(slice.length);
+            object.getObjectMetadata().setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + content.length);
+            return object;
+        } catch (IOException e) {
+            throw new AmazonServiceException("Problem getting Mock Object range: ", e);
+        }
     }
 
     @Override